@@ -31,5 +31,49 @@ public class Config {
                     .translation("refined_integrations.configuration.externalStorageInterfaceEnergy")
                     .defineInRange("networkInterfaceEnergy", 2, 0, 100);
 
+    /**
+     * Size of the per-block insert buffer, in items.
+     *
+     * When > 0, items inserted into an External Storage Interface are collected
+     * in a buffer and moved to the network once per tick with one insert per
+     * item type. 0 (the default) inserts straight into the network.
+     */
+    public static final ModConfigSpec.IntValue INSERT_BUFFER_SIZE = BUILDER
+                    .comment("How many items each External Storage Interface can buffer before inserting into the network.",
+                                    "Buffered items are inserted once per tick, one insert per item type, which is cheaper",
+                                    "when belts or chutes insert the same item many times per tick.",
+                                    "Default: 0 (disabled, items are inserted into the network right away)")
+                    .translation("refined_integrations.configuration.insertBufferSize")
+                    .defineInRange("insertBufferSize", 0, 0, 4096);
+
+    /**
+     * Debounce for the POWERED (on/off) look of the External Storage Interface.
+     *
+     * The interface itself switches on and off right away; only the blockstate
+     * change waits until the new state has held for this many ticks.
+     */
+    public static final ModConfigSpec.IntValue POWERED_STATE_DEBOUNCE_TICKS = BUILDER
+                    .comment("How many ticks the External Storage Interface has to stay on (or off) before its look changes.",
+                                    "Stops the block from flickering, and from causing block updates, when the network's",
+                                    "energy hovers around the threshold. The interface itself still switches right away.",
+                                    "Default: 10 (half a second), 0 changes the look right away")
+                    .translation("refined_integrations.configuration.poweredStateDebounceTicks")
+                    .defineInRange("poweredStateDebounceTicks", 10, 0, 200);
+
+    /**
+     * Total items per tick all External Storage Interfaces on one network may
+     * move together.
+     *
+     * The budget is split between the interfaces by their priority (see
+     * NetworkIoScheduler). 0 (the default) means no network-wide limit.
+     */
+    public static final ModConfigSpec.IntValue NETWORK_ITEMS_PER_TICK = BUILDER
+                    .comment("How many items per tick all External Storage Interfaces on one network may move together.",
+                                    "The budget is split between the interfaces by their Priority, unused budget carries",
+                                    "over for a few ticks. Stops many busy interfaces from starving the network or the server tick.",
+                                    "Default: 0 (no network-wide limit)")
+                    .translation("refined_integrations.configuration.networkItemsPerTick")
+                    .defineInRange("networkItemsPerTick", 0, 0, 1000000);
+
     static final ModConfigSpec SPEC = BUILDER.build();
 }
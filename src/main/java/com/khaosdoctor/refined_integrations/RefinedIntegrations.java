@@ -4,6 +4,8 @@ import org.slf4j.Logger;
 
 import com.khaosdoctor.refined_integrations.external_storage_interface.*;
 import com.khaosdoctor.refined_integrations.external_storage_interface.datagen.*;
+import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.ItemFilter;
+import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.ResourceStorageAccess;
 import com.mojang.logging.LogUtils;
 import com.refinedmods.refinedstorage.neoforge.api.RefinedStorageNeoForgeApi;
 
@@ -27,6 +29,7 @@ import net.neoforged.neoforge.capabilities.RegisterCapabilitiesEvent;
 import net.neoforged.neoforge.common.NeoForge;
 import net.neoforged.neoforge.common.data.ExistingFileHelper;
 import net.neoforged.neoforge.data.event.GatherDataEvent;
+import net.neoforged.neoforge.event.TagsUpdatedEvent;
 import net.neoforged.neoforge.event.server.ServerStartedEvent;
 import net.neoforged.neoforge.registries.DeferredBlock;
 import net.neoforged.neoforge.registries.DeferredHolder;
@@ -196,8 +199,15 @@ public class RefinedIntegrations {
                                 // ignore it
                                 (blockEntity, side) -> blockEntity.getContainerProvider());
 
+                // Each side can have its own item handler (with its own filter, mode and
+                // budget); sides without one return null so nobody scans them
                 event.registerBlockEntity(Capabilities.ItemHandler.BLOCK, NETWORK_INTERFACE_BLOCK_ENTITY.get(),
-                                (blockEntity, side) -> blockEntity.getItemHandler());
+                                (blockEntity, side) -> blockEntity.getItemHandler(side));
+
+                // Resource-keyed access for integrations that know which item they want
+                // and don't need slots at all. Same handler, so the side's settings apply
+                event.registerBlockEntity(ResourceStorageAccess.BLOCK, NETWORK_INTERFACE_BLOCK_ENTITY.get(),
+                                (blockEntity, side) -> blockEntity.getItemHandler(side));
         }
 
         private void commonSetup(FMLCommonSetupEvent event) {
@@ -210,4 +220,11 @@ public class RefinedIntegrations {
         private void onServerStarted(ServerStartedEvent event) {
                 LOGGER.info("[Refined Integrations] load complete event received");
         }
+
+        // Item filters check tags when they first see an item, so they have to
+        // forget those answers when tags are reloaded (/reload, joining a server)
+        @SubscribeEvent
+        private void onTagsUpdated(TagsUpdatedEvent event) {
+                ItemFilter.tagsUpdated();
+        }
 }
@@ -128,7 +128,9 @@ public class ExternalStorageInterfaceBlock extends Block implements EntityBlock
         ? (lvl, pos, st, blockEntity) -> {
           // Cast to our specific BlockEntity type and call doWork()
           if (blockEntity instanceof ExternalStorageInterfaceBlockEntity entity) {
-            entity.doWork(); // This runs 20 times per second!
+            // Runs 20 times per second. Besides RS's own node work, doWork()
+            // skips every step that has nothing to do (see its javadoc)
+            entity.doWork();
           }
         }
         : null;
@@ -217,4 +219,46 @@ public class ExternalStorageInterfaceBlock extends Block implements EntityBlock
   public BlockState mirror(BlockState state, Mirror mirror) {
     return this.rotate(state, mirror.getRotation(state.getValue(FACING)));
   }
+
+  /**
+   * Tells Minecraft that comparators can read a signal from this block.
+   */
+  @Override
+  protected boolean hasAnalogOutputSignal(BlockState state) {
+    return true;
+  }
+
+  /**
+   * The comparator signal, based on how full the network is (see
+   * ExternalStorageInterfaceBlockEntity.getComparatorSignal). This is O(1), it
+   * doesn't sum the slots like a normal container would.
+   */
+  @Override
+  protected int getAnalogOutputSignal(BlockState state, Level level, BlockPos pos) {
+    return level.getBlockEntity(pos) instanceof ExternalStorageInterfaceBlockEntity entity
+        ? entity.readComparatorSignal()
+        : 0;
+  }
+
+  /**
+   * Called when the block is removed or replaced.
+   *
+   * If the block is actually going away (not just changing blockstate, like
+   * POWERED flipping), the block entity gets a chance to hand its buffered
+   * inserts to the network or drop them, before the block entity is removed.
+   *
+   * @param state         The old blockstate
+   * @param level         The world the block is in
+   * @param pos           The position of the block
+   * @param newState      The blockstate replacing ours
+   * @param movedByPiston Whether a piston moved the block
+   */
+  @Override
+  protected void onRemove(BlockState state, Level level, BlockPos pos, BlockState newState, boolean movedByPiston) {
+    if (!state.is(newState.getBlock())
+        && level.getBlockEntity(pos) instanceof ExternalStorageInterfaceBlockEntity entity) {
+      entity.dropInsertBuffer();
+    }
+    super.onRemove(state, level, pos, newState, movedByPiston);
+  }
 }
@@ -1,7 +1,14 @@
 package com.khaosdoctor.refined_integrations.external_storage_interface;
 
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.khaosdoctor.refined_integrations.Config;
 import com.khaosdoctor.refined_integrations.RefinedIntegrations;
 import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.ExternalStorageInterfaceNetworkNode;
+import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.InsertBuffer;
 import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.NetworkItemHandler;
 import com.refinedmods.refinedstorage.common.api.RefinedStorageApi;
 import com.refinedmods.refinedstorage.common.api.support.network.InWorldNetworkNodeContainer;
@@ -9,10 +16,15 @@ import com.refinedmods.refinedstorage.common.support.network.AbstractBaseNetwork
 import com.refinedmods.refinedstorage.common.support.network.SimpleConnectionStrategy;
 
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
 import net.minecraft.network.chat.Component;
+import net.minecraft.world.Containers;
+import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.state.BlockState;
-import net.neoforged.neoforge.items.IItemHandler;
 
 /**
  * BlockEntity for the External Storage Interface block.
@@ -39,8 +51,47 @@ import net.neoforged.neoforge.items.IItemHandler;
 public class ExternalStorageInterfaceBlockEntity
     extends AbstractBaseNetworkNodeContainerBlockEntity<ExternalStorageInterfaceNetworkNode> {
 
-  // Adds the item handler for RS integration so we can store items in the network
-  private NetworkItemHandler itemHandler;
+  // NBT keys for our saved data
+  private static final String TAG_INSERT_BUFFER = "InsertBuffer";
+  private static final String TAG_PRIORITY = "Priority";
+  private static final String TAG_FACES = "Faces";
+  private static final String TAG_COMPARATOR_CAPACITY = "ComparatorCapacity";
+
+  // How often (in ticks) we poll the network's energy to update activeness
+  // when nothing else told us to check (1 second). Only the POWERED look
+  // depends on it: the item handlers check the energy themselves
+  private static final int ACTIVENESS_CHECK_INTERVAL = 20;
+
+  // Set when the node joined or left a network or a handler saw the energy
+  // change (see ExternalStorageInterfaceNetworkNode.setActivenessListener), so
+  // doWork() checks activeness on the next tick instead of waiting for the
+  // periodic check
+  private boolean activenessCheckPending = true;
+
+  // POWERED value waiting for the debounce window, and the game time it was
+  // first requested (-1 if nothing is pending), see activenessChanged()
+  private boolean pendingPowered;
+  private long pendingPoweredSince = -1;
+
+  // How many items count as "full" for the comparator signal, 0 means any
+  // item at all gives a full signal
+  private long comparatorCapacity = 0;
+
+  // The last comparator signal we told our neighbours about, -1 until a
+  // comparator first reads it (so interfaces nobody reads don't track it)
+  private int comparatorSignal = -1;
+
+  // Items inserted in buffered mode that haven't reached the network yet.
+  // Lives here (not in the handler) because it has to be saved with the block
+  private final InsertBuffer insertBuffer;
+
+  // Settings and item handler used on every side until a side is configured.
+  // Its settings are saved at the top level of our NBT
+  private final ExternalStorageInterfaceFace defaultFace;
+
+  // Sides with their own settings and item handler. When this is not empty,
+  // only these sides expose an item handler (see getItemHandler(Direction))
+  private final Map<Direction, ExternalStorageInterfaceFace> faces = new EnumMap<>(Direction.class);
 
   /**
    * Constructor - called when the block is placed in the world.
@@ -60,14 +111,246 @@ public class ExternalStorageInterfaceBlockEntity
         pos,
         state,
         new ExternalStorageInterfaceNetworkNode());
+
+    // Buffer size comes from the config, 0 means buffered inserts are disabled.
+    // setChanged() makes sure buffered items are saved with the chunk
+    this.insertBuffer = new InsertBuffer(Config.INSERT_BUFFER_SIZE.get(), this::setChanged);
+    this.defaultFace = createFace();
+
+    // Joining or leaving a network is the most common reason for activeness to
+    // change, so we react to it right away. Handlers that notice the energy ran
+    // out (or came back) tell us the same way
+    mainNetworkNode.setActivenessListener(() -> activenessCheckPending = true);
+  }
+
+  /**
+   * @return The item handler of the default face, used on every side while no
+   *         side is configured
+   */
+  public NetworkItemHandler getItemHandler() {
+    return defaultFace.getItemHandler();
+  }
+
+  /**
+   * Returns the item handler for the given side, this is what the item handler
+   * capability hands out.
+   *
+   * While no side is configured every side shares the default face, so blocks
+   * that were never configured keep working on all sides. Once any side has
+   * its own face, only configured sides have a handler and the others return
+   * null, so adjacent machines don't bother scanning them.
+   *
+   * @param side The side being queried, or null for "no particular side"
+   */
+  @Nullable
+  public NetworkItemHandler getItemHandler(@Nullable Direction side) {
+    if (faces.isEmpty()) {
+      return defaultFace.getItemHandler();
+    }
+    ExternalStorageInterfaceFace face = side == null ? null : faces.get(side);
+    return face == null ? null : face.getItemHandler();
+  }
+
+  /**
+   * @return The settings used on every side while no side is configured
+   */
+  public ExternalStorageInterfaceFace getDefaultFace() {
+    return defaultFace;
+  }
+
+  /**
+   * @return The settings of the given side, or null if it isn't configured
+   */
+  @Nullable
+  public ExternalStorageInterfaceFace getFace(Direction side) {
+    return faces.get(side);
+  }
+
+  /**
+   * Gives the side its own settings and item handler (see
+   * ExternalStorageInterfaceFace), or returns the existing ones. Saved with the
+   * block.
+   */
+  public ExternalStorageInterfaceFace addFace(Direction side) {
+    ExternalStorageInterfaceFace face = faces.get(side);
+    if (face == null) {
+      face = createFace();
+      faces.put(side, face);
+      facesChanged();
+    }
+    return face;
+  }
+
+  /**
+   * Removes the settings of the given side. If it was the last configured side,
+   * every side goes back to the default face.
+   */
+  public void removeFace(Direction side) {
+    ExternalStorageInterfaceFace face = faces.remove(side);
+    if (face != null) {
+      face.release();
+      facesChanged();
+    }
+  }
+
+  public long getComparatorCapacity() {
+    return comparatorCapacity;
+  }
+
+  /**
+   * Sets how many items count as "full" for the comparator signal, 0 makes any
+   * item at all give a full signal. Saved with the block.
+   */
+  public void setComparatorCapacity(long comparatorCapacity) {
+    this.comparatorCapacity = Math.max(0, comparatorCapacity);
+    setChanged();
+  }
+
+  /**
+   * Returns the comparator signal (0-15) for what the default face shows.
+   *
+   * Works like a vanilla container: 0 when empty, otherwise 1 to 15 by how
+   * full the network is compared to the ComparatorCapacity setting. The total
+   * comes from running totals (see ResourceTotals), so this is O(1) no matter
+   * how many item types the network holds.
+   */
+  public int getComparatorSignal() {
+    long total = getItemHandler().getTotalAmount();
+    if (total <= 0) {
+      return 0;
+    }
+    if (comparatorCapacity <= 0) {
+      return 15;
+    }
+    double fill = Math.min(1.0, (double) total / comparatorCapacity);
+    return 1 + (int) (fill * 14);
+  }
+
+  /**
+   * Called by the block when a comparator reads us. From then on doWork()
+   * tells the neighbours when the signal changes.
+   */
+  public int readComparatorSignal() {
+    comparatorSignal = getComparatorSignal();
+    return comparatorSignal;
+  }
+
+  private ExternalStorageInterfaceFace createFace() {
+    return new ExternalStorageInterfaceFace(mainNetworkNode, insertBuffer, this::faceSettingsChanged,
+        this::getGameTime);
+  }
+
+  private long getGameTime() {
+    return level == null ? 0 : level.getGameTime();
+  }
+
+  // A setting of some face changed: save it, and only keep the network's
+  // resource index if some face can show slots (insert-only faces don't)
+  private void faceSettingsChanged() {
+    boolean indexNeeded = faces.isEmpty()
+        ? defaultFace.getTransferMode().canExtract()
+        : faces.values().stream().anyMatch(face -> face.getTransferMode().canExtract());
+    mainNetworkNode.setResourceIndexNeeded(indexNeeded);
+    setChanged();
+  }
+
+  // Which sides have a handler changed. NeoForge caches capabilities, so
+  // adjacent machines have to be told to ask us again
+  private void facesChanged() {
+    faceSettingsChanged();
+    if (level != null) {
+      level.invalidateCapabilities(worldPosition);
+    }
+  }
+
+  public int getPriority() {
+    return mainNetworkNode.getIoShare().getPriority();
   }
 
-  public IItemHandler getItemHandler() {
-    if (itemHandler == null) {
-      // Create the item handler
-      itemHandler = new NetworkItemHandler(mainNetworkNode);
+  /**
+   * Sets how big a part of the network-wide item budget this interface gets
+   * compared to the other interfaces on the network (see NetworkIoScheduler).
+   * Saved with the block.
+   */
+  public void setPriority(int priority) {
+    mainNetworkNode.getIoShare().setPriority(priority);
+    setChanged();
+  }
+
+  /**
+   * Empties the insert buffer when the block is removed.
+   *
+   * Buffered items are inserted into the network if we are still connected to
+   * it, anything that doesn't fit is dropped in the world so nothing is lost.
+   * Called from ExternalStorageInterfaceBlock.onRemove().
+   */
+  public void dropInsertBuffer() {
+    if (level == null || insertBuffer.isEmpty()) {
+      return;
+    }
+
+    getItemHandler().flushInsertBuffer();
+    for (ItemStack stack : insertBuffer.drain()) {
+      Containers.dropItemStack(level, worldPosition.getX(), worldPosition.getY(), worldPosition.getZ(), stack);
     }
-    return itemHandler;
+  }
+
+  /**
+   * Saves our data to NBT (when the chunk is saved or unloaded).
+   *
+   * Besides what RS saves for us, we store:
+   * - The buffered inserts, so they survive chunk unloads and server restarts
+   * - The settings of the default face (slot window, filter, transfer mode and
+   * rate limit) and the priority, at the top level
+   * - The settings of each configured side, under Faces
+   * - The comparator capacity
+   */
+  @Override
+  public void saveAdditional(CompoundTag tag, HolderLookup.Provider provider) {
+    super.saveAdditional(tag, provider);
+    if (!insertBuffer.isEmpty()) {
+      tag.put(TAG_INSERT_BUFFER, insertBuffer.save(provider));
+    }
+    defaultFace.save(tag);
+    tag.putInt(TAG_PRIORITY, getPriority());
+    tag.putLong(TAG_COMPARATOR_CAPACITY, comparatorCapacity);
+
+    if (!faces.isEmpty()) {
+      CompoundTag facesTag = new CompoundTag();
+      for (Map.Entry<Direction, ExternalStorageInterfaceFace> entry : faces.entrySet()) {
+        CompoundTag faceTag = new CompoundTag();
+        entry.getValue().save(faceTag);
+        facesTag.put(entry.getKey().getSerializedName(), faceTag);
+      }
+      tag.put(TAG_FACES, facesTag);
+    }
+  }
+
+  /**
+   * Loads our data back from NBT, see saveAdditional().
+   */
+  @Override
+  public void loadAdditional(CompoundTag tag, HolderLookup.Provider provider) {
+    super.loadAdditional(tag, provider);
+    insertBuffer.load(tag.getList(TAG_INSERT_BUFFER, Tag.TAG_COMPOUND), provider);
+    defaultFace.load(tag);
+    setPriority(tag.getInt(TAG_PRIORITY));
+    setComparatorCapacity(tag.getLong(TAG_COMPARATOR_CAPACITY));
+
+    for (ExternalStorageInterfaceFace face : faces.values()) {
+      face.release();
+    }
+    faces.clear();
+    CompoundTag facesTag = tag.getCompound(TAG_FACES);
+    for (String key : facesTag.getAllKeys()) {
+      Direction side = Direction.byName(key);
+      if (side != null) {
+        ExternalStorageInterfaceFace face = createFace();
+        face.load(facesTag.getCompound(key));
+        faces.put(side, face);
+      }
+    }
+    facesChanged();
   }
 
   /**
@@ -102,6 +385,13 @@ public class ExternalStorageInterfaceBlockEntity
     // Call parent's setRemoved - this removes us from the RS network
     // and tells connected cables/nodes that we're gone
     super.setRemoved();
+
+    // Stop following the network's shared index, other interfaces may keep it
+    // alive
+    defaultFace.release();
+    for (ExternalStorageInterfaceFace face : faces.values()) {
+      face.release();
+    }
   }
 
   /**
@@ -147,9 +437,16 @@ public class ExternalStorageInterfaceBlockEntity
    * We use this to update our block's POWERED property so players can see
    * whether this block is actually part of a working network or not.
    *
+   * The node itself switches right away, but the POWERED property is
+   * debounced: when a network's energy hovers around the threshold the
+   * interface can flap on and off every few ticks, and every blockstate change
+   * means a client sync and Create re-evaluating adjacent machines. So the new
+   * visual state is only applied once it has held for
+   * Config.POWERED_STATE_DEBOUNCE_TICKS (see applyPendingPoweredState). A flap
+   * that reverts within that window never touches the blockstate at all.
+   *
    * @param newActive true if we just became active, false if we became inactive
    */
-  @SuppressWarnings("null")
   @Override
   protected void activenessChanged(boolean newActive) {
     // Always call parent first - important for RS to track state properly
@@ -160,19 +457,54 @@ public class ExternalStorageInterfaceBlockEntity
     // We only want to change the "real" state on the server, then it syncs to
     // client
     if (level != null && !level.isClientSide()) {
-      // Get the current block state (this includes properties like FACING and
-      // POWERED)
-      BlockState currentState = getBlockState();
-
-      // Only update if the POWERED property is different from our new active state
-      // (avoid unnecessary updates)
-      if (currentState.getValue(ExternalStorageInterfaceBlock.POWERED) != newActive) {
-        // Create a new state with POWERED set to match our network active state
-        BlockState newState = currentState.setValue(ExternalStorageInterfaceBlock.POWERED, newActive);
-        // Update the block in the world
-        // Block.UPDATE_ALL means: update clients, update neighbors, etc.
-        level.setBlock(getBlockPos(), newState, Block.UPDATE_ALL);
-      }
+      requestPoweredState(newActive);
+    }
+  }
+
+  /**
+   * Starts (or keeps) the debounce window for showing the given POWERED value,
+   * or cancels a pending change if the block already shows it.
+   */
+  @SuppressWarnings("null")
+  private void requestPoweredState(boolean powered) {
+    if (getBlockState().getValue(ExternalStorageInterfaceBlock.POWERED) == powered) {
+      // Flapped back before the debounce ran out, nothing to do
+      pendingPoweredSince = -1;
+      return;
+    }
+
+    // Start the debounce window, unless this state is already pending
+    if (pendingPoweredSince < 0 || pendingPowered != powered) {
+      pendingPowered = powered;
+      pendingPoweredSince = level.getGameTime();
+    }
+    applyPendingPoweredState();
+  }
+
+  /**
+   * Applies a pending POWERED change once it has held for the debounce window.
+   */
+  @SuppressWarnings("null")
+  private void applyPendingPoweredState() {
+    if (level == null || pendingPoweredSince < 0
+        || level.getGameTime() - pendingPoweredSince < Config.POWERED_STATE_DEBOUNCE_TICKS.get()) {
+      return;
+    }
+    pendingPoweredSince = -1;
+
+    // Get the current block state (this includes properties like FACING and
+    // POWERED)
+    BlockState currentState = getBlockState();
+
+    // Only update if the POWERED property is different from our new active state
+    // (avoid unnecessary updates)
+    if (currentState.getValue(ExternalStorageInterfaceBlock.POWERED) != pendingPowered) {
+      // Create a new state with POWERED set to match our network active state
+      BlockState newState = currentState.setValue(ExternalStorageInterfaceBlock.POWERED, pendingPowered);
+      // Update the block in the world
+      // POWERED is only visual, so we just sync it to clients
+      // (Block.UPDATE_CLIENTS) instead of also updating neighbors
+      level.setBlock(getBlockPos(), newState, Block.UPDATE_CLIENTS);
     }
   }
 
@@ -184,16 +516,40 @@ public class ExternalStorageInterfaceBlockEntity
    * In our ExternalStorageInterfaceBlock.java, we set up getTicker() to call this
    * method.
    *
-   * What happens each tick:
-   * 1. super.doWork() - runs the parent's network processing (handles RS network
-   * tasks)
-   * 2. updateActiveness() - checks if our active state changed and triggers
-   * activenessChanged() if it did
+   * What happens each tick, every step only when it has something to do:
+   * 1. super.doWork() - runs the parent's network processing (RS draws our
+   * energy here, and returns right away while we are inactive)
+   * 2. flushInsertBuffer() - inserts buffered items into the network (only
+   * while the buffer holds items)
+   * 3. updateActiveness() - checks if our active state changed and triggers
+   * activenessChanged() if it did, but only when it's worth checking (see
+   * below)
+   * 4. updateNeighbourForOutputSignal() - tells comparators when our signal
+   * changed (only once a comparator has read it)
+   * 5. applyPendingPoweredState() - applies a debounced POWERED change (only
+   * while one is pending)
+   *
+   * Transfer budgets (rate limits and the network's scheduler) and cached
+   * refusals don't tick at all: they catch up on the elapsed game time when an
+   * item handler is used.
    *
    * Why we need updateActiveness():
    * - activenessChanged() only fires when the state CHANGES
    * - But we need something to CHECK if it changed
-   * - updateActiveness() does that check every tick
+   *
+   * When do we check?
+   * - Right away (next tick) when the node joins or leaves a network, the node
+   * tells us through its activeness listener
+   * - Right away when an item handler finds the network's energy doesn't match
+   * our activeness (ExternalStorageInterfaceNetworkNode.isPowered)
+   * - Every ACTIVENESS_CHECK_INTERVAL ticks while we are in a network, because
+   * RS has no event for the network's stored energy running low or coming
+   * back; this only keeps POWERED right for interfaces nobody uses
+   * - The periodic check is offset by our position so that hundreds of
+   * interfaces don't all check in the same tick
+   *
+   * So an idle interface only costs RS's own node work and a few field checks
+   * per tick.
    *
    * Flow: doWork() → updateActiveness() → (if changed) → activenessChanged() →
    * update POWERED property
@@ -203,13 +559,47 @@ public class ExternalStorageInterfaceBlockEntity
     // Run the parent's tick logic (handles RS network node processing)
     super.doWork();
 
+    // Move buffered inserts (if any) into the network, one insert per item type
+    if (!insertBuffer.isEmpty()) {
+      getItemHandler().flushInsertBuffer();
+    }
+
     // Safety check: only update activeness if the world is fully loaded
     // During world loading, level might not be fully initialized yet
-    if (level != null && !level.isClientSide()) {
+    if (level != null && !level.isClientSide() && shouldCheckActiveness(level.getGameTime())) {
+      activenessCheckPending = false;
       // Check if our active state should change based on network status
-      // If it changed, this will call activenessChanged() automatically
-      updateActiveness(getBlockState(), ExternalStorageInterfaceBlock.POWERED);
+      // If it changed, this will call activenessChanged() automatically.
+      // We don't pass the POWERED property: RS would then write it to the
+      // block state itself right away, skipping our debounce
+      updateActiveness(getBlockState(), null);
+      // RS only calls activenessChanged() when the node's state changes, so
+      // also catch a POWERED value that doesn't match it (e.g. loaded from
+      // disk while the network is gone)
+      requestPoweredState(mainNetworkNode.isActive());
+    }
+
+    // Tell comparators when the signal changed (only once one has read it)
+    if (level != null && comparatorSignal >= 0) {
+      int signal = getComparatorSignal();
+      if (signal != comparatorSignal) {
+        comparatorSignal = signal;
+        level.updateNeighbourForOutputSignal(worldPosition, getBlockState().getBlock());
+      }
     }
+
+    // Apply a debounced POWERED change once it has held long enough
+    if (pendingPoweredSince >= 0) {
+      applyPendingPoweredState();
+    }
+  }
+
+  // Outside a network there is nothing to poll: joining one wakes us through
+  // the activeness listener
+  private boolean shouldCheckActiveness(long gameTime) {
+    return activenessCheckPending
+        || (mainNetworkNode.getNetwork() != null
+            && Math.floorMod(gameTime + getBlockPos().hashCode(), ACTIVENESS_CHECK_INTERVAL) == 0);
   }
 
   /**
@@ -0,0 +1,187 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface;
+
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nullable;
+
+import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.ExternalStorageInterfaceNetworkNode;
+import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.InsertBuffer;
+import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.ItemFilter;
+import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.NetworkItemHandler;
+import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.SlotWindow;
+import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.TransferMode;
+import com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration.TransferRateLimiter;
+
+import net.minecraft.nbt.CompoundTag;
+
+/**
+ * The settings and item handler of one face of the External Storage Interface.
+ *
+ * Each face can have its own slot window, filter, transfer mode, rate limit
+ * and large stack mode, so one block can serve several production lines with
+ * separate, smaller views of the network. A face owns its own
+ * NetworkItemHandler (with its own caches and budget); the network node and
+ * the insert buffer are shared by all faces of the block.
+ *
+ * The block also has a default face, used on every side until at least one
+ * side is configured (see ExternalStorageInterfaceBlockEntity.getItemHandler).
+ */
+public class ExternalStorageInterfaceFace {
+  // NBT keys for the face settings
+  private static final String TAG_SLOT_WINDOW = "SlotWindow";
+  private static final String TAG_FILTER = "Filter";
+  private static final String TAG_TRANSFER_MODE = "TransferMode";
+  private static final String TAG_RATE_LIMIT = "RateLimit";
+  private static final String TAG_LARGE_STACKS = "LargeStacks";
+
+  private final ExternalStorageInterfaceNetworkNode node;
+  private final InsertBuffer insertBuffer;
+  // Called when a setting changes, so the block entity can be saved
+  private final Runnable onChanged;
+  // The current game time, for the handler's budget and caches
+  private final LongSupplier clock;
+
+  // Created on first use, see getItemHandler()
+  @Nullable
+  private NetworkItemHandler itemHandler;
+
+  // Which part of the network we expose as slots (everything by default)
+  private SlotWindow slotWindow = SlotWindow.all();
+
+  // Which items we expose and accept, null means no filter
+  @Nullable
+  private ItemFilter filter;
+
+  // Which directions items may move in (both by default)
+  private TransferMode transferMode = TransferMode.BIDIRECTIONAL;
+
+  // Whether slots report real network amounts instead of at most a stack
+  private boolean largeStacks = false;
+
+  // Items per tick this face may move (no limit by default)
+  private final TransferRateLimiter rateLimiter = new TransferRateLimiter();
+
+  public ExternalStorageInterfaceFace(ExternalStorageInterfaceNetworkNode node, InsertBuffer insertBuffer,
+      Runnable onChanged, LongSupplier clock) {
+    this.node = node;
+    this.insertBuffer = insertBuffer;
+    this.onChanged = onChanged;
+    this.clock = clock;
+  }
+
+  public NetworkItemHandler getItemHandler() {
+    if (itemHandler == null) {
+      itemHandler = new NetworkItemHandler(node, insertBuffer, rateLimiter, clock);
+      itemHandler.setSlotWindow(slotWindow);
+      itemHandler.setFilter(filter);
+      itemHandler.setTransferMode(transferMode);
+      itemHandler.setLargeStacks(largeStacks);
+    }
+    return itemHandler;
+  }
+
+  public SlotWindow getSlotWindow() {
+    return slotWindow;
+  }
+
+  /**
+   * Limits which part of the network this face exposes as slots (see
+   * SlotWindow).
+   */
+  public void setSlotWindow(SlotWindow slotWindow) {
+    this.slotWindow = slotWindow;
+    if (itemHandler != null) {
+      itemHandler.setSlotWindow(slotWindow);
+    }
+    onChanged.run();
+  }
+
+  @Nullable
+  public ItemFilter getFilter() {
+    return filter;
+  }
+
+  /**
+   * Sets which items this face exposes and accepts (see ItemFilter), null
+   * removes the filter.
+   */
+  public void setFilter(@Nullable ItemFilter filter) {
+    this.filter = filter;
+    if (itemHandler != null) {
+      itemHandler.setFilter(filter);
+    }
+    onChanged.run();
+  }
+
+  public TransferMode getTransferMode() {
+    return transferMode;
+  }
+
+  /**
+   * Sets which directions this face moves items in (see TransferMode).
+   */
+  public void setTransferMode(TransferMode transferMode) {
+    this.transferMode = transferMode;
+    if (itemHandler != null) {
+      itemHandler.setTransferMode(transferMode);
+    }
+    onChanged.run();
+  }
+
+  public boolean hasLargeStacks() {
+    return largeStacks;
+  }
+
+  /**
+   * Makes slots report the real network amount (up to Integer.MAX_VALUE)
+   * instead of at most a stack, see NetworkItemHandler.setLargeStacks().
+   */
+  public void setLargeStacks(boolean largeStacks) {
+    this.largeStacks = largeStacks;
+    if (itemHandler != null) {
+      itemHandler.setLargeStacks(largeStacks);
+    }
+    onChanged.run();
+  }
+
+  public TransferRateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * Limits how many items this face moves per tick (see TransferRateLimiter),
+   * 0 items per tick removes the limit.
+   */
+  public void setRateLimit(int itemsPerTick, int burst) {
+    rateLimiter.configure(itemsPerTick, burst);
+    onChanged.run();
+  }
+
+  /**
+   * Lets go of the item handler when the face is no longer used, see
+   * NetworkItemHandler.release().
+   */
+  public void release() {
+    if (itemHandler != null) {
+      itemHandler.release();
+    }
+  }
+
+  public void save(CompoundTag tag) {
+    tag.put(TAG_SLOT_WINDOW, slotWindow.save());
+    if (filter != null) {
+      tag.put(TAG_FILTER, filter.save());
+    }
+    tag.putString(TAG_TRANSFER_MODE, transferMode.name());
+    tag.put(TAG_RATE_LIMIT, rateLimiter.save());
+    tag.putBoolean(TAG_LARGE_STACKS, largeStacks);
+  }
+
+  public void load(CompoundTag tag) {
+    setSlotWindow(SlotWindow.load(tag.getCompound(TAG_SLOT_WINDOW)));
+    setFilter(ItemFilter.load(tag.getCompound(TAG_FILTER)));
+    setTransferMode(TransferMode.byName(tag.getString(TAG_TRANSFER_MODE)));
+    rateLimiter.load(tag.getCompound(TAG_RATE_LIMIT));
+    setLargeStacks(tag.getBoolean(TAG_LARGE_STACKS));
+  }
+}
@@ -0,0 +1,71 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+/**
+ * Remembers which resources the network refused, so repeated calls for them
+ * fail right away instead of going through RS again.
+ *
+ * When the network is full, every belt and chute feeding an interface keeps
+ * calling insertItem every tick, and each call runs a full RS insert that
+ * fails. Likewise for extracting an item the network won't give out. An entry
+ * says "resource X was refused at index version V" and stays valid until:
+ * - The index version changes (something was inserted or extracted, so there
+ * may be room, or items, again). Every entry is dropped at once then
+ * - TTL_TICKS have passed. RS doesn't tell us when the network's capacity
+ * changes (a disk is added, an external storage's filter changes), so entries
+ * also expire on their own after a short while
+ *
+ * In insert-only mode there is no index and so no version; there the entries
+ * only expire with time.
+ *
+ * The cache is bounded: if it fills up it is simply cleared.
+ */
+public class BackpressureCache {
+  // How long a refusal is trusted without a storage change (1 second)
+  private static final int TTL_TICKS = 20;
+  private static final int MAX_ENTRIES = 256;
+
+  // Refused resource -> tick the refusal expires at, all for cachedVersion
+  private final Map<ItemResource, Long> expiresAt = new HashMap<>();
+  private long cachedVersion = -1;
+
+  /**
+   * @param version The current index version, or -1 if there is no index
+   * @param now     The current game time
+   * @return Whether the resource was refused since the last storage change
+   */
+  public boolean isRejected(ItemResource resource, long version, long now) {
+    if (expiresAt.isEmpty()) {
+      return false;
+    }
+    if (version != cachedVersion) {
+      expiresAt.clear();
+      return false;
+    }
+
+    Long expiry = expiresAt.get(resource);
+    if (expiry == null) {
+      return false;
+    }
+    if (now >= expiry) {
+      expiresAt.remove(resource);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Records that the network refused the resource at the given version.
+   */
+  public void reject(ItemResource resource, long version, long now) {
+    if (version != cachedVersion || expiresAt.size() >= MAX_ENTRIES) {
+      expiresAt.clear();
+      cachedVersion = version;
+    }
+    expiresAt.put(resource, now + TTL_TICKS);
+  }
+}
@@ -1,7 +1,12 @@
 package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
 
+import javax.annotation.Nullable;
+
 import com.khaosdoctor.refined_integrations.Config;
+import com.refinedmods.refinedstorage.api.network.Network;
+import com.refinedmods.refinedstorage.api.network.energy.EnergyNetworkComponent;
 import com.refinedmods.refinedstorage.api.network.impl.node.SimpleNetworkNode;
+import com.refinedmods.refinedstorage.api.network.storage.StorageNetworkComponent;
 
 /**
  * The network node representation for the External Storage Interface block.
@@ -30,8 +35,29 @@ import com.refinedmods.refinedstorage.api.network.impl.node.SimpleNetworkNode;
  * - If network runs out of energy, this block becomes inactive (POWERED =
  * false)
  * - Multiple External Storage Interfaces consume energy EACH
+ *
+ * The node also holds a reference to the NetworkResourceIndex of the network
+ * it belongs to. The index listens to the network's root storage and is shared
+ * by every External Storage Interface on that network (see
+ * SharedNetworkIndexes), so the item handler never has to walk
+ * storage.getAll() and the index is maintained once per network.
  */
 public class ExternalStorageInterfaceNetworkNode extends SimpleNetworkNode {
+  // The shared index of the network we are in, null when not in a network
+  @Nullable
+  private NetworkResourceIndex resourceIndex;
+  // The network resourceIndex belongs to, so we can release it when we leave
+  @Nullable
+  private Network indexedNetwork;
+  // Whether the interface exposes slots at all. Insert-only interfaces don't,
+  // so they don't need (or pay for) the index, see setResourceIndexNeeded()
+  private boolean resourceIndexNeeded = true;
+  // Our part of the network-wide item budget, see NetworkIoScheduler
+  private final NetworkIoScheduler.IoShare ioShare = new NetworkIoScheduler.IoShare();
+  // Told when our activeness may have changed, see setActivenessListener()
+  @Nullable
+  private Runnable activenessListener;
+
   /**
    * Constructor - creates the network node with energy requirements.
    *
@@ -43,4 +69,137 @@ public class ExternalStorageInterfaceNetworkNode extends SimpleNetworkNode {
     // .get() retrieves the current config value
     super(Config.NETWORK_INTERFACE_ENERGY.get());
   }
+
+  /**
+   * Called by RS when the node joins or leaves a network (including network
+   * merges and splits, where it is moved from one network to another).
+   *
+   * We release the shared index of the network we left and take a reference
+   * to the index of the network we joined, so the index always follows the
+   * network the node is part of (unless we don't need it, see
+   * setResourceIndexNeeded). Our share of the network's item budget moves the
+   * same way.
+   *
+   * @param network The new network, or null if the node left its network
+   */
+  @Override
+  public void setNetwork(@Nullable Network network) {
+    Network previous = getNetwork();
+    super.setNetwork(network);
+    updateResourceIndex();
+
+    if (previous == network) {
+      return;
+    }
+
+    // Move our share of the item budget to the new network's scheduler
+    if (previous != null) {
+      SharedNetworkSchedulers.leave(previous, ioShare);
+    }
+    if (network != null) {
+      SharedNetworkSchedulers.join(network, ioShare);
+    }
+
+    if (activenessListener != null) {
+      activenessListener.run();
+    }
+  }
+
+  /**
+   * Sets whether this node needs the shared resource index of its network.
+   *
+   * An insert-only interface never shows any slots, so it releases its
+   * reference: if it's the only interface on the network, the index detaches
+   * and nothing walks or tracks the network's contents for it.
+   */
+  public void setResourceIndexNeeded(boolean resourceIndexNeeded) {
+    this.resourceIndexNeeded = resourceIndexNeeded;
+    updateResourceIndex();
+  }
+
+  // Takes or releases the index reference so it matches the network we are in
+  // and whether we need the index at all
+  private void updateResourceIndex() {
+    Network target = resourceIndexNeeded ? getNetwork() : null;
+    if (indexedNetwork == target) {
+      return;
+    }
+
+    if (indexedNetwork != null) {
+      SharedNetworkIndexes.release(indexedNetwork);
+    }
+    indexedNetwork = target;
+    resourceIndex = target == null ? null : SharedNetworkIndexes.acquire(target);
+  }
+
+  /**
+   * Sets a callback that runs whenever our activeness may have changed: when
+   * the node joins or leaves a network, and when isPowered() finds that the
+   * network's energy no longer matches isActive(). The block entity uses it to
+   * update its activeness without polling every tick.
+   */
+  public void setActivenessListener(@Nullable Runnable activenessListener) {
+    this.activenessListener = activenessListener;
+  }
+
+  /**
+   * Checks whether the network can run us right now: we are in a network and
+   * it has stored at least our energy usage.
+   *
+   * isActive() is only updated when the block entity checks activeness, which
+   * it doesn't do every tick. The item handlers use this instead, so they stop
+   * moving items as soon as the network runs out of energy. If the answer
+   * differs from isActive(), the activeness listener is told so the block
+   * entity catches up on the next tick.
+   */
+  public boolean isPowered() {
+    Network network = getNetwork();
+    boolean powered = network != null
+        && network.getComponent(EnergyNetworkComponent.class).getStored() >= getEnergyUsage();
+    if (powered != isActive() && activenessListener != null) {
+      activenessListener.run();
+    }
+    return powered;
+  }
+
+  /**
+   * Runs once per tick while the block is loaded. Besides RS's own work we let
+   * the resource index do its deferred housekeeping, which is a no-op when the
+   * network didn't change (or another interface already did it this tick).
+   */
+  @Override
+  public void doWork() {
+    super.doWork();
+    if (resourceIndex != null) {
+      resourceIndex.maintain();
+    }
+  }
+
+  /**
+   * @return The shared index of the network we are in, or null if we are not in
+   *         a network (or it has no storage)
+   */
+  @Nullable
+  public NetworkResourceIndex getResourceIndex() {
+    return resourceIndex;
+  }
+
+  /**
+   * @return The storage of the network we are in, or null if we are not in a
+   *         network. Unlike getResourceIndex() this works without the index, for
+   *         inserts that don't need to know what's in the network
+   */
+  @Nullable
+  public StorageNetworkComponent getStorage() {
+    Network network = getNetwork();
+    return network == null ? null : network.getComponent(StorageNetworkComponent.class);
+  }
+
+  /**
+   * @return Our share of the network-wide item budget. Unlimited while we are
+   *         not in a network or the network has no budget configured
+   */
+  public NetworkIoScheduler.IoShare getIoShare() {
+    return ioShare;
+  }
 }
@@ -0,0 +1,170 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+/**
+ * The slots of a NetworkResourceIndex that pass an interface's ItemFilter.
+ *
+ * The view has its own dense, stable slot numbers (handed out by a
+ * SlotAllocator, just like the index), mapped to and from index slots. It
+ * follows the index through its SlotListener, so the filter only runs once per
+ * item type entering the network, and a filtered interface only exposes (and
+ * Create only scans) the resources that pass the filter.
+ *
+ * The view binds to whatever index the interface's network currently uses;
+ * binding seeds it with one pass over the index.
+ */
+public class FilteredSlotView implements NetworkResourceIndex.SlotListener {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final ItemFilter filter;
+
+  @Nullable
+  private NetworkResourceIndex index;
+
+  private final SlotAllocator slotAllocator = new SlotAllocator();
+  // View slot -> index slot, and index slot -> view slot; -1 means no mapping
+  private int[] indexSlots = newMapping(INITIAL_CAPACITY);
+  private int[] viewSlots = newMapping(INITIAL_CAPACITY);
+  // How many index slots currently pass the filter (size() minus tombstones)
+  private int typeCount = 0;
+
+  public FilteredSlotView(ItemFilter filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Follows the given index, seeding the view from it if it isn't the index we
+   * already follow.
+   */
+  public void bind(NetworkResourceIndex newIndex) {
+    if (index == newIndex) {
+      return;
+    }
+    unbind();
+
+    index = newIndex;
+    for (int slot = 0; slot < newIndex.size(); slot++) {
+      ItemResource resource = newIndex.getResource(slot);
+      if (resource != null) {
+        slotAdded(slot, resource);
+      }
+    }
+    newIndex.addSlotListener(this);
+  }
+
+  /**
+   * Stops following the current index (if any) and clears the view.
+   */
+  public void unbind() {
+    if (index != null) {
+      index.removeSlotListener(this);
+      index = null;
+    }
+    cleared();
+  }
+
+  public ItemFilter getFilter() {
+    return filter;
+  }
+
+  /**
+   * @return The number of view slots, including tombstones
+   */
+  public int size() {
+    return slotAllocator.size();
+  }
+
+  /**
+   * @return The number of item types in the view, without tombstones
+   */
+  public int getTypeCount() {
+    return typeCount;
+  }
+
+  /**
+   * @return The index slot behind a view slot, or -1 if there is none
+   */
+  public int toIndexSlot(int viewSlot) {
+    return viewSlot >= 0 && viewSlot < slotAllocator.size() ? indexSlots[viewSlot] : -1;
+  }
+
+  /**
+   * @return The view slot of an index slot, or -1 if it didn't pass the filter
+   */
+  public int toViewSlot(int indexSlot) {
+    return indexSlot >= 0 && indexSlot < viewSlots.length ? viewSlots[indexSlot] : -1;
+  }
+
+  public boolean containsIndexSlot(int indexSlot) {
+    return toViewSlot(indexSlot) >= 0;
+  }
+
+  @Override
+  public void slotAdded(int slot, ItemResource resource) {
+    if (!filter.test(resource)) {
+      return;
+    }
+
+    int viewSlot = slotAllocator.allocate();
+    indexSlots = ensureCapacity(indexSlots, viewSlot);
+    viewSlots = ensureCapacity(viewSlots, slot);
+    indexSlots[viewSlot] = slot;
+    viewSlots[slot] = viewSlot;
+    typeCount++;
+  }
+
+  @Override
+  public void slotRemoved(int slot) {
+    int viewSlot = toViewSlot(slot);
+    if (viewSlot < 0) {
+      return;
+    }
+
+    viewSlots[slot] = -1;
+    indexSlots[viewSlot] = -1;
+    slotAllocator.free(viewSlot);
+    typeCount--;
+  }
+
+  @Override
+  public void slotMoved(int from, int to) {
+    int viewSlot = toViewSlot(from);
+    if (viewSlot < 0) {
+      return;
+    }
+
+    viewSlots = ensureCapacity(viewSlots, to);
+    viewSlots[from] = -1;
+    viewSlots[to] = viewSlot;
+    indexSlots[viewSlot] = to;
+  }
+
+  @Override
+  public void cleared() {
+    Arrays.fill(indexSlots, -1);
+    Arrays.fill(viewSlots, -1);
+    slotAllocator.clear();
+    typeCount = 0;
+  }
+
+  private static int[] newMapping(int capacity) {
+    int[] mapping = new int[capacity];
+    Arrays.fill(mapping, -1);
+    return mapping;
+  }
+
+  private static int[] ensureCapacity(int[] mapping, int slot) {
+    if (slot < mapping.length) {
+      return mapping;
+    }
+
+    int[] grown = newMapping(Math.max(mapping.length * 2, slot + 1));
+    System.arraycopy(mapping, 0, grown, 0, mapping.length);
+    return grown;
+  }
+}
@@ -0,0 +1,189 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.refinedmods.refinedstorage.api.core.Action;
+import com.refinedmods.refinedstorage.api.network.storage.StorageNetworkComponent;
+import com.refinedmods.refinedstorage.api.storage.Actor;
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * Per-block buffer for the opt-in buffered insert mode.
+ *
+ * A Create belt or chute calls insertItem once per stack, often with the same
+ * item many times per tick, and each call would go through the full
+ * StorageNetworkComponent.insert path. In buffered mode inserts are collected
+ * here instead and flushed once per tick with a single insert per distinct
+ * resource.
+ *
+ * The capacity (in items) comes from Config.INSERT_BUFFER_SIZE, 0 disables the
+ * buffer. Items that don't fit in the network when flushing stay in the buffer
+ * for the next tick; while the buffer is full new inserts are rejected.
+ *
+ * Items in the buffer are never lost:
+ * - The buffer is saved with the block entity, so it survives chunk unloads
+ * - When the block is removed the buffer is flushed, and anything left over is
+ * dropped in the world (see ExternalStorageInterfaceBlock.onRemove)
+ */
+public class InsertBuffer {
+  private final int capacity;
+  private final Runnable onChanged;
+
+  // Buffered amount per resource, in insertion order
+  private final Map<ItemResource, Long> amounts = new LinkedHashMap<>();
+  private long total = 0;
+
+  // Whether onChanged already ran for an insert since the last flush. The
+  // first insert of a tick reports right away (so the items are saved even if
+  // the flush can't reach the network), later ones in the same tick don't:
+  // marking the block entity as changed is not free (it also updates
+  // comparators next to it)
+  private boolean changed = false;
+
+  /**
+   * @param capacity  How many items the buffer can hold, 0 disables it
+   * @param onChanged Called when the contents changed, so the block entity
+   *                  can be marked for saving (at most once per tick for
+   *                  inserts and once per flush)
+   */
+  public InsertBuffer(int capacity, Runnable onChanged) {
+    this.capacity = capacity;
+    this.onChanged = onChanged;
+  }
+
+  public boolean isEnabled() {
+    return capacity > 0;
+  }
+
+  public boolean isEmpty() {
+    return total == 0;
+  }
+
+  /**
+   * Accepts as much of the given amount as fits in the buffer.
+   *
+   * @return How much was (or, when simulating, would be) accepted
+   */
+  public int insert(ItemResource resource, int amount, boolean simulate) {
+    int accepted = (int) Math.min(amount, capacity - total);
+    if (accepted <= 0) {
+      return 0;
+    }
+
+    if (!simulate) {
+      amounts.merge(resource, (long) accepted, Long::sum);
+      total += accepted;
+      if (!changed) {
+        changed = true;
+        onChanged.run();
+      }
+    }
+    return accepted;
+  }
+
+  /**
+   * Moves the buffered items into the network, one insert per resource.
+   *
+   * Whatever the network doesn't accept stays in the buffer. onChanged only
+   * runs if the network took something, so a full network doesn't mark the
+   * block as changed every tick.
+   *
+   * Called once per tick, also when there is no network to flush to (storage
+   * is null): the next insert then reports its change again.
+   */
+  public void flush(@Nullable StorageNetworkComponent storage, Actor actor) {
+    changed = false;
+    if (total == 0 || storage == null) {
+      return;
+    }
+
+    boolean flushed = false;
+    Iterator<Map.Entry<ItemResource, Long>> it = amounts.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<ItemResource, Long> entry = it.next();
+      long inserted = storage.insert(entry.getKey(), entry.getValue(), Action.EXECUTE, actor);
+      if (inserted <= 0) {
+        continue;
+      }
+
+      total -= inserted;
+      flushed = true;
+      if (inserted >= entry.getValue()) {
+        it.remove();
+      } else {
+        entry.setValue(entry.getValue() - inserted);
+      }
+    }
+
+    if (flushed) {
+      onChanged.run();
+    }
+  }
+
+  /**
+   * Empties the buffer, returning its contents as stacks no bigger than the
+   * item's max stack size (so they can be dropped in the world).
+   */
+  public List<ItemStack> drain() {
+    List<ItemStack> stacks = new ArrayList<>();
+    for (Map.Entry<ItemResource, Long> entry : amounts.entrySet()) {
+      ItemStack prototype = entry.getKey().toItemStack(1);
+      long remaining = entry.getValue();
+      while (remaining > 0) {
+        int count = (int) Math.min(remaining, prototype.getMaxStackSize());
+        stacks.add(prototype.copyWithCount(count));
+        remaining -= count;
+      }
+    }
+
+    amounts.clear();
+    total = 0;
+    changed = false;
+    onChanged.run();
+    return stacks;
+  }
+
+  /**
+   * Writes the buffer contents as a list of { item, amount } entries.
+   */
+  public ListTag save(HolderLookup.Provider provider) {
+    ListTag list = new ListTag();
+    for (Map.Entry<ItemResource, Long> entry : amounts.entrySet()) {
+      CompoundTag tag = new CompoundTag();
+      tag.put("item", entry.getKey().toItemStack(1).save(provider));
+      tag.putLong("amount", entry.getValue());
+      list.add(tag);
+    }
+    return list;
+  }
+
+  /**
+   * Restores the buffer contents written by save(). Loaded items are kept even
+   * if the configured capacity shrank in the meantime, so nothing is lost.
+   */
+  public void load(ListTag list, HolderLookup.Provider provider) {
+    amounts.clear();
+    total = 0;
+
+    for (Tag element : list) {
+      CompoundTag tag = (CompoundTag) element;
+      long amount = tag.getLong("amount");
+      ItemStack.parse(provider, tag.getCompound("item")).ifPresent(stack -> {
+        amounts.merge(ItemResource.ofItemStack(stack), amount, Long::sum);
+        total += amount;
+      });
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+
+/**
+ * Allow/deny filter for the items an External Storage Interface exposes and
+ * accepts.
+ *
+ * Entries are strings:
+ * - "minecraft:cobblestone": a single item
+ * - "#c:ingots": every item in a tag
+ * - "@create": every item of a mod (namespace)
+ *
+ * Rules:
+ * - Deny wins over allow
+ * - An empty allow list allows everything that isn't denied. An allow list
+ * whose entries match nothing (a typo, an empty tag) allows nothing
+ *
+ * The entries are compiled once into hash sets of items and namespaces, plus a
+ * list of tags, and the final verdict is cached per Item. Matching a resource
+ * is then a single identity map lookup, which matters because the filter runs
+ * for every item type that enters the network.
+ *
+ * Tags are not expanded up front: they are checked on the item itself, so
+ * they always use the tags currently loaded. When tags are reloaded (/reload,
+ * joining a server) tagsUpdated() is called and filters with tags drop their
+ * cached verdicts; getTagsVersion() tells views built from the old verdicts to
+ * rebuild.
+ *
+ * The filter is part of the block's configuration and is saved with it.
+ */
+public class ItemFilter {
+  private static final String TAG_ALLOW = "Allow";
+  private static final String TAG_DENY = "Deny";
+
+  // Bumped every time tags are reloaded, see tagsUpdated()
+  private static volatile int tagsVersion = 0;
+
+  // The entries as configured, kept for saving
+  private final List<String> allow;
+  private final List<String> deny;
+
+  // Compiled entries
+  private final Set<Item> allowItems = new HashSet<>();
+  private final Set<String> allowNamespaces = new HashSet<>();
+  private final List<TagKey<Item>> allowTags = new ArrayList<>();
+  private final Set<Item> denyItems = new HashSet<>();
+  private final Set<String> denyNamespaces = new HashSet<>();
+  private final List<TagKey<Item>> denyTags = new ArrayList<>();
+
+  // Item -> verdict, filled as items are seen, for the tags of verdictsVersion
+  private final Map<Item, Boolean> verdicts = new IdentityHashMap<>();
+  private int verdictsVersion = -1;
+
+  public ItemFilter(List<String> allow, List<String> deny) {
+    this.allow = List.copyOf(allow);
+    this.deny = List.copyOf(deny);
+    compile(this.allow, allowItems, allowNamespaces, allowTags);
+    compile(this.deny, denyItems, denyNamespaces, denyTags);
+  }
+
+  private static void compile(List<String> entries, Set<Item> items, Set<String> namespaces,
+      List<TagKey<Item>> tags) {
+    for (String entry : entries) {
+      if (entry.startsWith("@")) {
+        namespaces.add(entry.substring(1));
+      } else if (entry.startsWith("#")) {
+        ResourceLocation id = ResourceLocation.tryParse(entry.substring(1));
+        if (id != null) {
+          tags.add(TagKey.create(Registries.ITEM, id));
+        }
+      } else {
+        ResourceLocation id = ResourceLocation.tryParse(entry);
+        if (id != null) {
+          BuiltInRegistries.ITEM.getOptional(id).ifPresent(items::add);
+        }
+      }
+    }
+  }
+
+  public boolean test(ItemResource resource) {
+    return matches(resource.item());
+  }
+
+  public boolean matches(Item item) {
+    int version = getTagsVersion();
+    if (version != verdictsVersion) {
+      verdicts.clear();
+      verdictsVersion = version;
+    }
+    return verdicts.computeIfAbsent(item, this::computeVerdict);
+  }
+
+  private boolean computeVerdict(Item item) {
+    String namespace = BuiltInRegistries.ITEM.getKey(item).getNamespace();
+    if (denyItems.contains(item) || denyNamespaces.contains(namespace) || isInAny(item, denyTags)) {
+      return false;
+    }
+    // Decided by the configured entries, not by what they resolved to: an
+    // allow list that matches nothing must not turn into "allow everything"
+    if (allow.isEmpty()) {
+      return true;
+    }
+    return allowItems.contains(item) || allowNamespaces.contains(namespace) || isInAny(item, allowTags);
+  }
+
+  @SuppressWarnings("deprecation")
+  private static boolean isInAny(Item item, List<TagKey<Item>> tags) {
+    for (TagKey<Item> tag : tags) {
+      if (item.builtInRegistryHolder().is(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return Changes whenever the verdicts of this filter may have changed
+   *         because tags were reloaded; always 0 for filters without tags
+   */
+  public int getTagsVersion() {
+    return allowTags.isEmpty() && denyTags.isEmpty() ? 0 : tagsVersion;
+  }
+
+  /**
+   * Called when tags are reloaded, see RefinedIntegrations.onTagsUpdated().
+   */
+  public static void tagsUpdated() {
+    tagsVersion++;
+  }
+
+  public CompoundTag save() {
+    CompoundTag tag = new CompoundTag();
+    tag.put(TAG_ALLOW, toListTag(allow));
+    tag.put(TAG_DENY, toListTag(deny));
+    return tag;
+  }
+
+  private static ListTag toListTag(List<String> entries) {
+    ListTag list = new ListTag();
+    for (String entry : entries) {
+      list.add(StringTag.valueOf(entry));
+    }
+    return list;
+  }
+
+  /**
+   * Reads a filter written by save().
+   *
+   * @return The filter, or null if it has no entries (nothing is filtered)
+   */
+  public static ItemFilter load(CompoundTag tag) {
+    List<String> allow = tag.getList(TAG_ALLOW, Tag.TAG_STRING).stream().map(Tag::getAsString).toList();
+    List<String> deny = tag.getList(TAG_DENY, Tag.TAG_STRING).stream().map(Tag::getAsString).toList();
+    if (allow.isEmpty() && deny.isEmpty()) {
+      return null;
+    }
+    return new ItemFilter(allow, deny);
+  }
+}
@@ -0,0 +1,63 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * Small bounded cache that maps incoming stacks to a canonical ItemResource.
+ *
+ * A Create belt feeding the interface inserts the same item type over and
+ * over. Without this cache every insert builds a new ItemResource (copying the
+ * data components) and RS then hashes and compares those components again to
+ * find it in storage. With the cache, repeated inserts reuse one instance, so
+ * RS's lookups hit the identity check in equals().
+ *
+ * Entries are keyed by the item + components hash and verified with
+ * ItemStack.isSameItemSameComponents(), so a hash collision just counts as a
+ * miss. The least recently used entry is evicted once the cache is full.
+ */
+public class ItemResourceInterner {
+  private static final int MAX_ENTRIES = 256;
+
+  private record Entry(ItemStack prototype, ItemResource resource) {
+  }
+
+  // accessOrder = true makes iteration order LRU, so removeEldestEntry evicts
+  // the least recently used entry
+  private final Map<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  /**
+   * @param stack The stack being inserted
+   * @return The canonical resource for the stack, or null if it isn't cached
+   */
+  @Nullable
+  public ItemResource get(ItemStack stack) {
+    Entry entry = entries.get(ItemStack.hashItemAndComponents(stack));
+    if (entry == null || !ItemStack.isSameItemSameComponents(entry.prototype(), stack)) {
+      return null;
+    }
+    return entry.resource();
+  }
+
+  /**
+   * Remembers the canonical resource for the stack's item and components.
+   */
+  public void put(ItemStack stack, ItemResource resource) {
+    entries.put(ItemStack.hashItemAndComponents(stack), new Entry(stack.copyWithCount(1), resource));
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+}
@@ -0,0 +1,170 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.khaosdoctor.refined_integrations.Config;
+
+/**
+ * Splits a network-wide item budget between the interfaces of one RS network.
+ *
+ * A per-interface rate limit (TransferRateLimiter) caps each block, but twenty
+ * busy interfaces on one network still add up. The scheduler caps the total:
+ * every tick Config.NETWORK_ITEMS_PER_TICK items are handed out to the
+ * interfaces on the network, weighted by their priority:
+ * - Each interface gets budget * priority / total priority
+ * - What's left after rounding down goes round-robin, one item each, starting
+ * at a different interface every tick, so low priorities still get items
+ * - Unused quota carries over to the next ticks, up to CARRY_OVER_TICKS worth
+ * of the interface's share, so an interface that moves items in bursts isn't
+ * penalized but idle interfaces can't hoard budget
+ *
+ * A budget of 0 (the default) means no network-wide limit.
+ *
+ * There is no tick event per network, so the budget is handed out when an
+ * interface asks for it (see IoShare.tick): the first call of a game tick hands
+ * out the budget of every tick since the last one, up to CARRY_OVER_TICKS, so
+ * interfaces that don't move items don't have to tick the scheduler. The
+ * scheduler of a network is shared through SharedNetworkSchedulers.
+ */
+public class NetworkIoScheduler {
+  // How many ticks of unused quota an interface can save up
+  private static final int CARRY_OVER_TICKS = 4;
+
+  private final List<IoShare> shares = new ArrayList<>();
+  private long totalPriority = 0;
+
+  // Where the round-robin of the rounding remainder starts
+  private int cursor = 0;
+  private long lastTickTime = Long.MIN_VALUE;
+  private int budget = 0;
+
+  void add(IoShare share) {
+    shares.add(share);
+    totalPriority += share.priority;
+    share.scheduler = this;
+    share.quota = 0;
+  }
+
+  void remove(IoShare share) {
+    if (shares.remove(share)) {
+      totalPriority -= share.priority;
+    }
+    share.scheduler = null;
+  }
+
+  boolean isEmpty() {
+    return shares.isEmpty();
+  }
+
+  public boolean isLimited() {
+    return budget > 0;
+  }
+
+  /**
+   * Hands out the budget of the ticks since the last call. Does nothing if it
+   * was already handed out in this game tick.
+   */
+  public void tick(long gameTime) {
+    if (gameTime <= lastTickTime) {
+      return;
+    }
+    // More ticks than the carry-over would only be capped away again
+    long ticks = lastTickTime == Long.MIN_VALUE ? 1 : Math.min(gameTime - lastTickTime, CARRY_OVER_TICKS);
+    lastTickTime = gameTime;
+    budget = Config.NETWORK_ITEMS_PER_TICK.get();
+    if (budget <= 0 || shares.isEmpty()) {
+      return;
+    }
+
+    long handedOut = 0;
+    for (IoShare share : shares) {
+      long grant = (long) budget * share.priority / totalPriority;
+      share.refill(grant * ticks, carryOverCap(share));
+      handedOut += grant;
+    }
+
+    // The remainder is smaller than the number of shares, so this hands out at
+    // most one item per share and tick
+    long remainder = (budget - handedOut) * ticks;
+    for (int i = 0; i < remainder; i++) {
+      IoShare share = shares.get((cursor + i) % shares.size());
+      share.refill(1, carryOverCap(share));
+    }
+    cursor = (int) ((cursor + ticks) % shares.size());
+  }
+
+  // At least one item, so shares that round down to 0 can still save up
+  private long carryOverCap(IoShare share) {
+    long perTick = Math.max(1, ((long) budget * share.priority + totalPriority - 1) / totalPriority);
+    return perTick * CARRY_OVER_TICKS;
+  }
+
+  private void changePriority(IoShare share, int priority) {
+    if (shares.contains(share)) {
+      totalPriority += priority - share.priority;
+    }
+  }
+
+  /**
+   * One interface's part of the network budget. Owned by the network node, it
+   * moves with the node from network to network (see SharedNetworkSchedulers).
+   */
+  public static class IoShare {
+    public static final int MIN_PRIORITY = 1;
+    public static final int MAX_PRIORITY = 64;
+
+    private int priority = MIN_PRIORITY;
+    private long quota = 0;
+    @Nullable
+    private NetworkIoScheduler scheduler;
+
+    public int getPriority() {
+      return priority;
+    }
+
+    public void setPriority(int priority) {
+      int clamped = Math.max(MIN_PRIORITY, Math.min(priority, MAX_PRIORITY));
+      if (scheduler != null) {
+        scheduler.changePriority(this, clamped);
+      }
+      this.priority = clamped;
+    }
+
+    /**
+     * Lets the scheduler hand out the budget up to this game tick, if no other
+     * interface on the network did already. Called before the share is used.
+     */
+    public void tick(long gameTime) {
+      if (scheduler != null) {
+        scheduler.tick(gameTime);
+      }
+    }
+
+    /**
+     * @return How many of the requested items fit in this interface's quota
+     */
+    public int available(int requested) {
+      return isLimited() ? (int) Math.min(requested, quota) : requested;
+    }
+
+    /**
+     * Takes the quota for items that were actually moved.
+     */
+    public void consume(long moved) {
+      if (isLimited() && moved > 0) {
+        quota = Math.max(0, quota - moved);
+      }
+    }
+
+    private boolean isLimited() {
+      return scheduler != null && scheduler.isLimited();
+    }
+
+    private void refill(long grant, long cap) {
+      quota = Math.min(cap, quota + grant);
+    }
+  }
+}
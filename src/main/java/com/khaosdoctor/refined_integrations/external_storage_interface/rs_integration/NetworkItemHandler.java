@@ -1,126 +1,285 @@
 package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
 
-import java.util.Collection;
-import java.util.List;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.khaosdoctor.refined_integrations.RefinedIntegrations;
 import com.refinedmods.refinedstorage.api.core.Action;
-import com.refinedmods.refinedstorage.api.network.Network;
 import com.refinedmods.refinedstorage.api.network.storage.StorageNetworkComponent;
-import com.refinedmods.refinedstorage.api.resource.ResourceAmount;
 import com.refinedmods.refinedstorage.api.storage.Actor;
 import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
 
 import net.minecraft.world.item.ItemStack;
 import net.neoforged.neoforge.items.IItemHandler;
 
-public class NetworkItemHandler implements IItemHandler {
+/**
+ * Exposes the items of a Refined Storage network as an IItemHandler.
+ *
+ * All methods go through the same item-only view: the node's
+ * NetworkResourceIndex. Slot N means the same item type in getSlots(),
+ * getStackInSlot() and extractItem(), and fluids never take up a slot.
+ *
+ * Slot layout:
+ * - 0 .. N - 1: one slot per item type (empty if it's a tombstone), where N is
+ * the number of index slots shown by the interface's SlotWindow (all of them
+ * unless the window is limited)
+ * - N: an always empty slot so there is somewhere to insert new item types
+ *
+ * Inserting ignores the slot, items always go to the network as a whole.
+ *
+ * With an ItemFilter, the handler only exposes (and only accepts) items that
+ * pass it; the filtered slots come from a FilteredSlotView that follows the
+ * index.
+ *
+ * The TransferMode decides which directions are allowed. An insert-only
+ * handler only has the empty insert slot and inserts straight into the
+ * network's storage without the index; an extract-only handler rejects
+ * inserts before touching the network.
+ *
+ * With a TransferRateLimiter or a network-wide budget (NetworkIoScheduler)
+ * configured, every call first checks the interface's budget and only moves
+ * what fits; an empty budget is answered right away without querying the
+ * network.
+ *
+ * When the network refuses an insert or an extract, a BackpressureCache makes
+ * later identical calls fail right away until the network changes.
+ *
+ * The handler also implements ResourceStorageAccess, which skips slots
+ * entirely and goes straight to the network's storage, with the same mode,
+ * filter and budget checks.
+ */
+public class NetworkItemHandler implements IItemHandler, ResourceSlotLookup, ResourceStorageAccess {
   private final ExternalStorageInterfaceNetworkNode node;
   private static final Actor ACTOR = () -> RefinedIntegrations.NETWORK_INTERFACE.getId().toString();
 
-  // Used for caching slot count to improve performance
-  private int cachedSlotCount = 0;
-  private long lastCacheTime = 0;
+  // Canonical ItemResource instances for stacks inserted recently
+  private final ItemResourceInterner resourceInterner = new ItemResourceInterner();
 
-  public NetworkItemHandler(ExternalStorageInterfaceNetworkNode node) {
+  // Collects inserts to flush once per tick when buffered mode is enabled
+  private final InsertBuffer insertBuffer;
+
+  // Limits how many items this interface moves per tick
+  private final TransferRateLimiter rateLimiter;
+
+  // The current game time. Budgets refill and cached refusals expire by it
+  // when the handler is used, so nothing has to tick the handler
+  private final LongSupplier clock;
+
+  // Resources the network recently refused to take or to give out
+  private final BackpressureCache rejectedInserts = new BackpressureCache();
+  private final BackpressureCache rejectedExtracts = new BackpressureCache();
+
+  // The last snapshot handed out by getSnapshot(), and what it was built from.
+  // Every rebuild takes a new version, so it also changes when our settings do
+  private ResourceSnapshot snapshot = ResourceSnapshot.EMPTY;
+  @Nullable
+  private NetworkResourceIndex snapshotIndex;
+  private long snapshotIndexVersion = -1;
+  private boolean snapshotStale = true;
+
+  // Running totals of what this handler shows, created on first use
+  @Nullable
+  private ResourceTotals totals;
+
+  // Which part of the network this handler exposes as slots
+  private SlotWindow slotWindow = SlotWindow.all();
+
+  // The slots passing the interface's filter, null when there is no filter
+  @Nullable
+  private FilteredSlotView filteredView;
+  // The filter's tags version the view and totals were built with
+  private int filterTagsVersion = 0;
+
+  // Which directions items may move in
+  private TransferMode transferMode = TransferMode.BIDIRECTIONAL;
+
+  // Whether slots report the real network amount instead of at most a stack
+  private boolean largeStacks = false;
+
+  /**
+   * @param clock Returns the current game time
+   */
+  public NetworkItemHandler(ExternalStorageInterfaceNetworkNode node, InsertBuffer insertBuffer,
+      TransferRateLimiter rateLimiter, LongSupplier clock) {
     this.node = node;
+    this.insertBuffer = insertBuffer;
+    this.rateLimiter = rateLimiter;
+    this.clock = clock;
   }
 
   /**
    * Gets the current slots in the network dynamically based on the stored items.
    *
-   * This method can be called frequently, so we cache the result for a short time
-   * to improve performance.
+   * This method can be called frequently (Create scans every slot), so it reads
+   * from the node's resource index, which RS keeps up to date for us, instead of
+   * querying the network. The extra slot at the end is always empty so there is
+   * somewhere to insert new item types.
    */
   @Override
   public int getSlots() {
-    long currentTime = System.currentTimeMillis();
-    // If cache is recent (within 1 second), return cached value
-    if (currentTime - lastCacheTime >= 1000) {
-      // Update cache time
-      lastCacheTime = currentTime;
-      // Recalculate slot count
-      cachedSlotCount = calculateSlots() + 1;
+    if (!transferMode.canExtract()) {
+      return 1; // Just the insert slot
     }
 
-    return cachedSlotCount;
+    NetworkResourceIndex index = getIndex();
+    return (index == null ? 0 : slotWindow.size(index, getFilteredView(index))) + 1;
   }
 
-  private int calculateSlots() {
-    StorageNetworkComponent storage = getStorage();
+  public void setSlotWindow(SlotWindow slotWindow) {
+    if (this.slotWindow != slotWindow) {
+      this.slotWindow.unbind();
+    }
+    this.slotWindow = slotWindow;
+  }
 
-    // If no storage, zero slots
-    if (storage == null) {
-      return 0;
+  /**
+   * Turns large virtual stacks on or off. When on, slots report the real
+   * network amount (up to Integer.MAX_VALUE) and extractItem moves the whole
+   * request in one storage operation, for bulk movers that handle oversized
+   * stacks. When off, slots behave like normal stacks.
+   */
+  public void setLargeStacks(boolean largeStacks) {
+    this.largeStacks = largeStacks;
+  }
+
+  public void setTransferMode(TransferMode transferMode) {
+    this.transferMode = transferMode;
+    snapshotStale = true;
+  }
+
+  /**
+   * Sets the filter of the interface, or removes it when null.
+   */
+  public void setFilter(@Nullable ItemFilter filter) {
+    if (filteredView != null) {
+      filteredView.unbind();
+    }
+    filteredView = filter == null ? null : new FilteredSlotView(filter);
+    filterTagsVersion = filter == null ? 0 : filter.getTagsVersion();
+    if (totals != null) {
+      totals.unbind();
+      totals = null;
     }
+    snapshotStale = true;
+  }
 
-    // Count distinct item resources in storage and return that as slot count
-    Collection<ResourceAmount> resources = storage.getAll();
-    return (int) resources.stream().filter(res -> res.resource() instanceof ItemResource).count();
+  /**
+   * Stops following the network's index. Called when the handler is no longer
+   * used (the block or its side went away), so the shared index doesn't keep
+   * notifying it.
+   */
+  public void release() {
+    slotWindow.unbind();
+    if (filteredView != null) {
+      filteredView.unbind();
+    }
+    if (totals != null) {
+      totals.unbind();
+    }
   }
 
-  @Override
-  public int getSlotLimit(int slot) {
-    return 64;
+  /**
+   * @return The filtered view following the given index, or null if there is
+   *         no filter
+   */
+  @Nullable
+  private FilteredSlotView getFilteredView(NetworkResourceIndex index) {
+    if (filteredView != null) {
+      filteredView.bind(index);
+    }
+    return filteredView;
   }
 
-  @Override
-  public boolean isItemValid(int slot, ItemStack stack) {
-    return getStorage() != null;
+  // Window slot -> index slot, going through the filtered view if there is one
+  private int toIndexSlot(NetworkResourceIndex index, int slot) {
+    return slotWindow.toIndexSlot(index, getFilteredView(index), slot);
   }
 
-  private Network getNetwork() {
-    if (node == null || !node.isActive()) {
+  /**
+   * Returns the resource index shared by the node's network, or null if the
+   * network can't run the node right now or the index is not attached to a
+   * network storage.
+   *
+   * This is the single entry point for every method of the handler, so they all
+   * agree on what is in the network and in which slot.
+   */
+  private NetworkResourceIndex getIndex() {
+    if (node == null || !node.isPowered()) {
       return null;
     }
 
-    return node.getNetwork();
+    // The filtered view, totals and snapshot only ask the filter about each
+    // item once. If tags were reloaded since, rebuild them with the new tags
+    if (filteredView != null && filteredView.getFilter().getTagsVersion() != filterTagsVersion) {
+      setFilter(filteredView.getFilter());
+    }
+
+    NetworkResourceIndex index = node.getResourceIndex();
+    return index != null && index.isAttached() ? index : null;
   }
 
+  /**
+   * Returns the storage of the node's network, or null if the network can't
+   * run the node right now (see ExternalStorageInterfaceNetworkNode.isPowered).
+   * Inserts use this instead of the index, so they also work when the
+   * node doesn't hold an index (insert-only mode).
+   */
+  @Nullable
   private StorageNetworkComponent getStorage() {
-    Network network = getNetwork();
-    if (network == null) {
+    if (node == null || !node.isPowered()) {
       return null;
     }
+    return node.getStorage();
+  }
 
-    return network.getComponent(StorageNetworkComponent.class);
+  @Override
+  public int getSlot(ItemResource resource) {
+    if (!transferMode.canExtract()) {
+      return -1;
+    }
+
+    NetworkResourceIndex index = getIndex();
+    return index == null ? -1 : slotWindow.toWindowSlot(index, getFilteredView(index), index.getSlot(resource));
+  }
+
+  @Override
+  public int getSlotLimit(int slot) {
+    return largeStacks ? Integer.MAX_VALUE : 64;
+  }
+
+  @Override
+  public boolean isItemValid(int slot, ItemStack stack) {
+    return transferMode.canInsert()
+        && getStorage() != null
+        && (filteredView == null || filteredView.getFilter().matches(stack.getItem()));
   }
 
   @Nonnull
   @Override
   public ItemStack getStackInSlot(int slot) {
-    // Get the storage
-    StorageNetworkComponent storage = getStorage();
-    if (storage == null || slot < 0) {
+    if (!transferMode.canExtract()) {
       return ItemStack.EMPTY;
     }
 
-    // Get all items in the storage
-    Collection<ResourceAmount> resources = storage.getAll();
-    List<ResourceAmount> resourceList = resources.stream().toList();
-
-    if (slot >= resourceList.size()) {
+    NetworkResourceIndex index = getIndex();
+    if (index == null) {
       return ItemStack.EMPTY;
     }
 
-    // Return the Nth item type based on the slot index
-    ResourceAmount resourceAmount = resourceList.get(slot);
-
-    // Check if it's an item resource and not a fluid
-    if (resourceAmount.resource() instanceof ItemResource itemResource) {
-      // Convert to stack
-      ItemStack stack = itemResource.toItemStack(resourceAmount.amount());
-
-      // Cap at max stack size
-      if (stack.getCount() > stack.getMaxStackSize()) {
-        stack.setCount(stack.getMaxStackSize());
-      }
-
-      return stack;
+    // Return the Nth item type based on the slot index. We copy the cached
+    // prototype instead of converting the resource again, which is much cheaper
+    int indexSlot = toIndexSlot(index, slot);
+    ItemStack prototype = index.getPrototype(indexSlot);
+    if (prototype.isEmpty()) {
+      return ItemStack.EMPTY;
     }
-    return ItemStack.EMPTY;
+
+    // Cap at max stack size, or at what fits in an int for large stacks
+    long count = Math.min(index.getAmount(indexSlot), getStackLimit(prototype));
+    return prototype.copyWithCount((int) count);
   }
 
   @Nonnull
@@ -129,17 +288,49 @@ public class NetworkItemHandler implements IItemHandler {
     if (stack.isEmpty()) {
       return ItemStack.EMPTY;
     }
+    if (!transferMode.canInsert()) {
+      return stack; // Extract-only, return full stack
+    }
+
+    // Only insert what fits in this tick's budget
+    int count = getBudget(stack.getCount());
+    if (count <= 0) {
+      return stack; // Over budget, return full stack
+    }
 
     StorageNetworkComponent storage = getStorage();
     if (storage == null) {
       return stack; // Cannot insert, return full stack
     }
+    if (filteredView != null && !filteredView.getFilter().matches(stack.getItem())) {
+      return stack; // Filtered out, return full stack
+    }
+
+    // Null in insert-only mode, where we go straight to the storage
+    NetworkResourceIndex index = getIndex();
+    ItemResource itemResource = resolveResource(index, stack);
 
-    // Convert ItemStack to ItemResource
-    ItemResource itemResource = ItemResource.ofItemStack(stack);
+    // If the network refused this item and nothing changed since, it will
+    // refuse again. This also answers the execute call Create makes right
+    // after a simulation that inserted nothing. (The buffer has its own
+    // capacity, so it isn't cached)
+    long version = index == null ? -1 : index.getVersion();
+    if (!insertBuffer.isEnabled() && rejectedInserts.isRejected(itemResource, version, clock.getAsLong())) {
+      return stack;
+    }
 
-    // Try to insert into storage
-    long inserted = storage.insert(itemResource, stack.getCount(), simulate ? Action.SIMULATE : Action.EXECUTE, ACTOR);
+    // In buffered mode the item goes into the buffer and reaches the network
+    // at the end of the tick (see flushInsertBuffer)
+    long inserted = insertBuffer.isEnabled()
+        ? insertBuffer.insert(itemResource, count, simulate)
+        : storage.insert(itemResource, count, simulate ? Action.SIMULATE : Action.EXECUTE, ACTOR);
+
+    if (!simulate) {
+      consumeBudget(inserted);
+    }
+    if (inserted == 0 && !insertBuffer.isEnabled()) {
+      rejectedInserts.reject(itemResource, version, clock.getAsLong());
+    }
 
     // Return the remainder
     if (inserted < stack.getCount()) {
@@ -151,38 +342,246 @@ public class NetworkItemHandler implements IItemHandler {
     return ItemStack.EMPTY;
   }
 
+  private int getStackLimit(ItemStack prototype) {
+    return largeStacks ? Integer.MAX_VALUE : prototype.getMaxStackSize();
+  }
+
+  /**
+   * Both budgets catch up on the ticks since they were last used first, so
+   * they don't need a tick of their own.
+   *
+   * @return How many of the requested items fit in both this interface's rate
+   *         limit and its share of the network-wide budget
+   */
+  private int getBudget(int requested) {
+    long now = clock.getAsLong();
+    rateLimiter.refill(now);
+    node.getIoShare().tick(now);
+    return node.getIoShare().available(rateLimiter.available(requested));
+  }
+
+  private void consumeBudget(long moved) {
+    rateLimiter.consume(moved);
+    node.getIoShare().consume(moved);
+  }
+
+  /**
+   * Converts a stack to an ItemResource, reusing the canonical instance if we
+   * have seen this item type recently. Otherwise, if the network already has
+   * this item type, the instance from the index is used: either way RS can
+   * match it by identity instead of comparing components again.
+   *
+   * @param index The resource index, or null if the node doesn't hold one
+   */
+  private ItemResource resolveResource(@Nullable NetworkResourceIndex index, ItemStack stack) {
+    ItemResource itemResource = resourceInterner.get(stack);
+    if (itemResource == null) {
+      itemResource = ItemResource.ofItemStack(stack);
+      int existingSlot = index == null ? -1 : index.getSlot(itemResource);
+      if (existingSlot >= 0) {
+        itemResource = index.getResource(existingSlot);
+      }
+      resourceInterner.put(stack, itemResource);
+    }
+    return itemResource;
+  }
+
+  /**
+   * Moves the buffered inserts into the network. Called once per tick by the
+   * block entity; does nothing if the buffer is empty. If we are not active
+   * the items stay in the buffer until we are.
+   */
+  public void flushInsertBuffer() {
+    if (insertBuffer.isEmpty()) {
+      return;
+    }
+    insertBuffer.flush(getStorage(), ACTOR);
+  }
+
   @Nonnull
   @Override
   public ItemStack extractItem(int slot, int amount, boolean simulate) {
-    StorageNetworkComponent storage = getStorage();
-    if (storage == null || slot < 0 || amount <= 0) {
+    if (!transferMode.canExtract()) {
       return ItemStack.EMPTY;
     }
 
-    // Get the item type in this slot
-    Collection<ResourceAmount> resources = storage.getAll();
-    List<ResourceAmount> resourceList = resources.stream().toList();
+    // Only extract what fits in this tick's budget
+    amount = getBudget(amount);
+    if (amount <= 0) {
+      return ItemStack.EMPTY;
+    }
 
-    // Check if slot is valid
-    if (slot >= resourceList.size()) {
+    NetworkResourceIndex index = getIndex();
+    if (index == null) {
       return ItemStack.EMPTY;
     }
 
-    // Get the resource at this slot
-    ResourceAmount resourceAmount = resourceList.get(slot);
-    if (!(resourceAmount.resource() instanceof ItemResource itemResource)) {
+    // Get the item type in this slot from the index
+    int indexSlot = toIndexSlot(index, slot);
+    ItemResource itemResource = index.getResource(indexSlot);
+    if (itemResource == null || rejectedExtracts.isRejected(itemResource, index.getVersion(), clock.getAsLong())) {
       return ItemStack.EMPTY;
     }
 
-    // Extract from storage
-    long extracted = storage.extract(itemResource, amount, simulate ? Action.SIMULATE : Action.EXECUTE, ACTOR);
+    // One extract never returns more than a stack, unless large stacks are on
+    amount = (int) Math.min(amount, getStackLimit(index.getPrototype(indexSlot)));
+
+    // Simulations go to the network too: the index knows how much of the item
+    // is stored, but not whether the storages holding it will give it out
+    long extracted = index.getStorage().extract(itemResource, amount,
+        simulate ? Action.SIMULATE : Action.EXECUTE, ACTOR);
+
+    if (!simulate) {
+      consumeBudget(extracted);
+    }
+    if (extracted == 0) {
+      // The index says the item is there, but the network won't give it out.
+      // Like for inserts, this also answers the execute call that follows a
+      // failed simulation
+      rejectedExtracts.reject(itemResource, index.getVersion(), clock.getAsLong());
+    }
+
     if (extracted > 0) {
-      // Create ItemStack to return
-      ItemStack extractedStack = itemResource.toItemStack((int) extracted);
-      return extractedStack;
+      // Create ItemStack to return from the cached prototype
+      return index.getPrototype(indexSlot).copyWithCount((int) extracted);
     }
 
     return ItemStack.EMPTY;
   }
 
+  /**
+   * Extracts a matching item, finding its slot through the reverse index
+   * instead of scanning.
+   */
+  @Nonnull
+  @Override
+  public ItemStack extractItem(ItemStack template, int amount, boolean simulate) {
+    int slot = findSlot(template);
+    if (slot < 0) {
+      return ItemStack.EMPTY;
+    }
+    return extractItem(slot, amount, simulate);
+  }
+
+  @Override
+  public long insert(ItemResource resource, long amount, boolean simulate) {
+    if (amount <= 0 || !transferMode.canInsert() || !passesFilter(resource)) {
+      return 0;
+    }
+    int count = getBudget(clampToInt(amount));
+    StorageNetworkComponent storage = getStorage();
+    if (count <= 0 || storage == null) {
+      return 0;
+    }
+
+    long inserted = storage.insert(resource, count, simulate ? Action.SIMULATE : Action.EXECUTE, ACTOR);
+    if (!simulate) {
+      consumeBudget(inserted);
+    }
+    return inserted;
+  }
+
+  @Override
+  public long extract(ItemResource resource, long amount, boolean simulate) {
+    if (amount <= 0 || !transferMode.canExtract() || !passesFilter(resource)) {
+      return 0;
+    }
+    int count = getBudget(clampToInt(amount));
+    StorageNetworkComponent storage = getStorage();
+    if (count <= 0 || storage == null) {
+      return 0;
+    }
+
+    long extracted = storage.extract(resource, count, simulate ? Action.SIMULATE : Action.EXECUTE, ACTOR);
+    if (!simulate) {
+      consumeBudget(extracted);
+    }
+    return extracted;
+  }
+
+  @Override
+  public long count(ItemResource resource) {
+    if (!transferMode.canExtract() || !passesFilter(resource)) {
+      return 0;
+    }
+    StorageNetworkComponent storage = getStorage();
+    return storage == null ? 0 : storage.get(resource);
+  }
+
+  @Override
+  public long getTotalAmount() {
+    ResourceTotals current = getTotals();
+    return current == null ? 0 : current.getTotalAmount();
+  }
+
+  @Override
+  public int getTypeCount() {
+    ResourceTotals current = getTotals();
+    return current == null ? 0 : current.getTypeCount();
+  }
+
+  /**
+   * @return The running totals following the current index, or null if the
+   *         node has no index or this handler shows nothing (insert-only)
+   */
+  @Nullable
+  private ResourceTotals getTotals() {
+    NetworkResourceIndex index = transferMode.canExtract() ? getIndex() : null;
+    if (index == null) {
+      return null;
+    }
+    if (totals == null) {
+      totals = new ResourceTotals(filteredView == null ? null : filteredView.getFilter());
+    }
+    totals.bind(index);
+    return totals;
+  }
+
+  private boolean passesFilter(ItemResource resource) {
+    return filteredView == null || filteredView.getFilter().test(resource);
+  }
+
+  // The budget (and IItemHandler) work in ints, RS in longs
+  private static int clampToInt(long amount) {
+    return (int) Math.min(amount, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Builds the snapshot from the index only when the index changed since the
+   * last one (or our settings did), so repeated polls cost nothing. The
+   * snapshot holds every item type passing the filter, regardless of the slot
+   * window; insert-only handlers show nothing.
+   */
+  @Nullable
+  @Override
+  public ResourceSnapshot getSnapshot(long knownVersion) {
+    NetworkResourceIndex index = transferMode.canExtract() ? getIndex() : null;
+    if (snapshotStale || index != snapshotIndex
+        || (index != null && index.getVersion() != snapshotIndexVersion)) {
+      snapshot = buildSnapshot(index, ResourceSnapshot.nextVersion());
+      snapshotIndex = index;
+      snapshotIndexVersion = index == null ? -1 : index.getVersion();
+      snapshotStale = false;
+    }
+    return snapshot.getVersion() == knownVersion ? null : snapshot;
+  }
+
+  private ResourceSnapshot buildSnapshot(@Nullable NetworkResourceIndex index, long version) {
+    if (index == null) {
+      return new ResourceSnapshot(version, new ItemResource[0], new long[0]);
+    }
+
+    ItemResource[] resources = new ItemResource[index.size()];
+    long[] amounts = new long[index.size()];
+    int count = 0;
+    for (int slot = 0; slot < index.size(); slot++) {
+      ItemResource resource = index.getResource(slot);
+      if (resource != null && passesFilter(resource)) {
+        resources[count] = resource;
+        amounts[count] = index.getAmount(slot);
+        count++;
+      }
+    }
+    return new ResourceSnapshot(version, Arrays.copyOf(resources, count), Arrays.copyOf(amounts, count));
+  }
 }
@@ -0,0 +1,531 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+import javax.annotation.Nullable;
+
+import com.refinedmods.refinedstorage.api.network.storage.StorageNetworkComponent;
+import com.refinedmods.refinedstorage.api.resource.ResourceAmount;
+import com.refinedmods.refinedstorage.api.resource.list.MutableResourceList;
+import com.refinedmods.refinedstorage.api.storage.root.RootStorageListener;
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * Slot index of the item resources stored in a Refined Storage network.
+ *
+ * Instead of rebuilding the resource list from storage.getAll() whenever it is
+ * needed, the index is seeded once when the node joins a network and is then
+ * kept up to date by RS's change notifications. Every insert, extract or
+ * amount change in the network arrives here as a delta, so the cost of keeping
+ * the index current scales with how often the network changes, not with how
+ * many item types it holds.
+ *
+ * There is one index per network, shared by all interfaces on it (see
+ * SharedNetworkIndexes).
+ *
+ * Lifecycle:
+ * - attach(): called when the first interface joins a network, seeds the
+ * index and registers the listener on the root storage
+ * - changed(): called by RS for every change in the root storage
+ * - detach(): called when the last interface leaves the network, unregisters
+ * the listener and clears the index
+ * - maintain(): called every tick by each interface on the network, does
+ * deferred housekeeping only if the index changed since the last call
+ *
+ * Every change bumps a version counter. Anything derived from the index can
+ * compare versions instead of timestamps: an idle network keeps its version,
+ * so nothing gets recomputed, and a changed network has a new version within
+ * the same tick.
+ *
+ * Slots are handed out by a SlotAllocator, so a resource keeps its slot for as
+ * long as it is in the network. Slots of resources that ran out are left empty
+ * (see SlotAllocator for the tombstone policy).
+ *
+ * Besides slot order, the index keeps two orderings used by windowed
+ * interfaces (see SlotWindow), both updated per delta:
+ * - Recency: a linked list of slots, most recently changed first, O(1) per
+ * change
+ * - Abundance: slots sorted by amount, O(log n) per change. Only maintained
+ * once an interface asked for it, since most networks never need it
+ *
+ * Per-interface views on top of the index (like filters) can follow slot
+ * changes through a SlotListener instead of rescanning the index.
+ *
+ * Fluids and other non-item resources are ignored since they can't be exposed
+ * through an item handler.
+ */
+public class NetworkResourceIndex implements RootStorageListener {
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * Notified when resources enter, leave or move between slots of the index,
+   * and when their amounts change. The index's own orderings are already
+   * updated when a listener is called, except that recency is updated after
+   * amountChanged.
+   */
+  public interface SlotListener {
+    void slotAdded(int slot, ItemResource resource);
+
+    void slotRemoved(int slot);
+
+    void slotMoved(int from, int to);
+
+    /**
+     * The amount of the resource in a slot changed. Also called when a
+     * resource is added (with an old amount of 0, after slotAdded) and when it
+     * is removed (with a new amount of 0, before slotRemoved), so listeners
+     * can keep running totals from the deltas alone.
+     */
+    default void amountChanged(int slot, ItemResource resource, long oldAmount, long newAmount) {
+    }
+
+    /**
+     * The whole index was cleared (it detached from its storage).
+     */
+    void cleared();
+  }
+
+  private final List<SlotListener> slotListeners = new ArrayList<>();
+
+  // The storage we are currently listening to, null when not attached
+  @Nullable
+  private StorageNetworkComponent storage;
+
+  // Slot -> resource and slot -> amount, tombstones hold null and 0
+  private ItemResource[] resources = new ItemResource[INITIAL_CAPACITY];
+  private long[] amounts = new long[INITIAL_CAPACITY];
+  // Slot -> prototype stack of the resource, built lazily, see getPrototype()
+  private ItemStack[] prototypes = new ItemStack[INITIAL_CAPACITY];
+  private final SlotAllocator slotAllocator = new SlotAllocator();
+
+  // Recency list linked by slot: newer[slot] / older[slot] are the neighbours,
+  // -1 at the ends. mostRecentSlot is the head, -1 when the index is empty
+  private int[] newer = new int[INITIAL_CAPACITY];
+  private int[] older = new int[INITIAL_CAPACITY];
+  private int mostRecentSlot = -1;
+
+  // Slots sorted by amount (largest first), null until someone asks for it
+  @Nullable
+  private TreeSet<Integer> slotsByAmount;
+
+  // Resource -> slot, used to find where a delta has to be applied
+  private final Map<ItemResource, Integer> slotsByResource = new HashMap<>();
+
+  // Bumped on every change, see getVersion()
+  private long version = 0;
+  // Version seen by the last maintain() call
+  private long maintainedVersion = -1;
+
+  /**
+   * Starts tracking the given storage.
+   *
+   * The index is seeded with a single pass over storage.getAll(), after that
+   * only deltas are applied.
+   *
+   * @param newStorage The root storage of the network the node joined
+   */
+  public void attach(StorageNetworkComponent newStorage) {
+    if (storage == newStorage) {
+      return;
+    }
+    detach();
+
+    for (ResourceAmount resourceAmount : newStorage.getAll()) {
+      if (resourceAmount.resource() instanceof ItemResource itemResource) {
+        add(itemResource, resourceAmount.amount());
+      }
+    }
+
+    storage = newStorage;
+    storage.addListener(this);
+    version++;
+  }
+
+  /**
+   * Stops tracking the current storage (if any) and clears the index.
+   */
+  public void detach() {
+    if (storage != null) {
+      storage.removeListener(this);
+      storage = null;
+    }
+
+    Arrays.fill(resources, 0, slotAllocator.size(), null);
+    Arrays.fill(amounts, 0, slotAllocator.size(), 0);
+    Arrays.fill(prototypes, 0, slotAllocator.size(), null);
+    slotAllocator.clear();
+    slotsByResource.clear();
+    mostRecentSlot = -1;
+    slotsByAmount = null;
+    for (SlotListener listener : slotListeners) {
+      listener.cleared();
+    }
+    version++;
+  }
+
+  public boolean isAttached() {
+    return storage != null;
+  }
+
+  /**
+   * @return The storage the index is attached to, or null if not attached
+   */
+  @Nullable
+  public StorageNetworkComponent getStorage() {
+    return storage;
+  }
+
+  /**
+   * Applies a single change from the root storage to the index.
+   *
+   * @param change The resource that changed, its new total amount and whether
+   *               it is still available in the network
+   */
+  @Override
+  public void changed(MutableResourceList.OperationResult change) {
+    if (!(change.resource() instanceof ItemResource itemResource)) {
+      return;
+    }
+
+    Integer slot = slotsByResource.get(itemResource);
+    if (!change.available()) {
+      if (slot != null) {
+        remove(slot);
+      }
+    } else if (slot != null) {
+      setAmount(slot, change.amount());
+      touch(slot);
+    } else {
+      add(itemResource, change.amount());
+    }
+    version++;
+  }
+
+  /**
+   * Runs deferred housekeeping (compaction) at a tick boundary.
+   *
+   * Compaction moves resources between slots, so it isn't done in the middle
+   * of a tick where a Create machine could be halfway through a scan. If
+   * nothing changed since the last call this returns right away.
+   */
+  public void maintain() {
+    if (maintainedVersion == version) {
+      return;
+    }
+
+    if (slotAllocator.shouldCompact()) {
+      compact();
+      version++;
+    }
+    maintainedVersion = version;
+  }
+
+  /**
+   * @return A counter that changes whenever the contents of the index change
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return The number of slots, including tombstones
+   */
+  public int size() {
+    return slotAllocator.size();
+  }
+
+  /**
+   * @return The resource in the given slot, or null if the slot is a tombstone
+   *         or out of range
+   */
+  @Nullable
+  public ItemResource getResource(int slot) {
+    if (slot < 0 || slot >= slotAllocator.size()) {
+      return null;
+    }
+    return resources[slot];
+  }
+
+  /**
+   * Returns a cached stack of the resource in the given slot, with a count of 1.
+   *
+   * Converting an ItemResource to an ItemStack copies its data components,
+   * which adds up when Create polls every slot each tick (especially for
+   * enchanted or shulker-like items). The prototype is built the first time it
+   * is needed and kept until the resource in the slot changes; amount changes
+   * don't affect it.
+   *
+   * The returned stack is shared: callers must copy it (copyWithCount) and
+   * never modify it.
+   *
+   * @return The prototype, or ItemStack.EMPTY if the slot is a tombstone or out
+   *         of range
+   */
+  public ItemStack getPrototype(int slot) {
+    ItemResource resource = getResource(slot);
+    if (resource == null) {
+      return ItemStack.EMPTY;
+    }
+
+    ItemStack prototype = prototypes[slot];
+    if (prototype == null) {
+      prototype = resource.toItemStack(1);
+      prototypes[slot] = prototype;
+    }
+    return prototype;
+  }
+
+  /**
+   * Looks up the slot of a resource through the reverse index, O(1).
+   *
+   * @return The slot holding the resource, or -1 if the network doesn't have it
+   */
+  public int getSlot(ItemResource resource) {
+    Integer slot = slotsByResource.get(resource);
+    return slot == null ? -1 : slot;
+  }
+
+  public void addSlotListener(SlotListener listener) {
+    slotListeners.add(listener);
+  }
+
+  public void removeSlotListener(SlotListener listener) {
+    slotListeners.remove(listener);
+  }
+
+  /**
+   * @param limit  The maximum number of slots to return. The walk stops once
+   *               it found this many, so with a filter pass at most the number
+   *               of slots that can match it
+   * @param filter Only slots matching this are returned, null for all
+   * @return The slots of the most recently changed resources, newest first
+   */
+  public int[] getMostRecentlyChanged(int limit, @Nullable IntPredicate filter) {
+    int[] result = new int[Math.min(limit, slotsByResource.size())];
+    int count = 0;
+    for (int slot = mostRecentSlot; slot >= 0 && count < result.length; slot = older[slot]) {
+      if (filter == null || filter.test(slot)) {
+        result[count++] = slot;
+      }
+    }
+    return count == result.length ? result : Arrays.copyOf(result, count);
+  }
+
+  /**
+   * The first call starts maintaining the abundance order (one O(n log n) pass
+   * over the index), after that it's kept up to date per change.
+   *
+   * @param limit  The maximum number of slots to return, see
+   *               getMostRecentlyChanged()
+   * @param filter Only slots matching this are returned, null for all
+   * @return The slots of the most abundant resources, largest amount first
+   */
+  public int[] getMostAbundant(int limit, @Nullable IntPredicate filter) {
+    TreeSet<Integer> sorted = getSlotsByAmount();
+    int[] result = new int[Math.min(limit, sorted.size())];
+    int count = 0;
+    for (int slot : sorted) {
+      if (count == result.length) {
+        break;
+      }
+      if (filter == null || filter.test(slot)) {
+        result[count++] = slot;
+      }
+    }
+    return count == result.length ? result : Arrays.copyOf(result, count);
+  }
+
+  /**
+   * Steps through the recency order one slot at a time, for views that keep
+   * their own window over it (see SlotWindow).
+   *
+   * @param slot A slot in the index, or -1 to start at the most recently
+   *             changed one
+   * @return The next older slot, or -1 at the end
+   */
+  public int getOlderSlot(int slot) {
+    return slot < 0 ? mostRecentSlot : older[slot];
+  }
+
+  /**
+   * Steps through the abundance order one slot at a time, like getOlderSlot().
+   * Starts maintaining that order if nobody asked for it yet.
+   *
+   * @param slot A slot in the index, or -1 to start at the most abundant one
+   * @return The slot with the next smaller amount, or -1 at the end
+   */
+  public int getNextByAmount(int slot) {
+    TreeSet<Integer> sorted = getSlotsByAmount();
+    Integer next = slot < 0 ? (sorted.isEmpty() ? null : sorted.first()) : sorted.higher(slot);
+    return next == null ? -1 : next;
+  }
+
+  // The abundance order, built with one O(n log n) pass on first use
+  private TreeSet<Integer> getSlotsByAmount() {
+    if (slotsByAmount == null) {
+      slotsByAmount = new TreeSet<>(this::compareByAmount);
+      for (int slot : slotsByResource.values()) {
+        slotsByAmount.add(slot);
+      }
+    }
+    return slotsByAmount;
+  }
+
+  // Largest amount first, ties broken by slot so the order is total
+  private int compareByAmount(int a, int b) {
+    int byAmount = Long.compare(amounts[b], amounts[a]);
+    return byAmount != 0 ? byAmount : Integer.compare(a, b);
+  }
+
+  /**
+   * @return The amount stored in the network for the resource in the given slot
+   */
+  public long getAmount(int slot) {
+    if (slot < 0 || slot >= slotAllocator.size()) {
+      return 0;
+    }
+    return amounts[slot];
+  }
+
+  private void add(ItemResource resource, long amount) {
+    int slot = slotAllocator.allocate();
+    if (slot == resources.length) {
+      resources = Arrays.copyOf(resources, resources.length * 2);
+      amounts = Arrays.copyOf(amounts, amounts.length * 2);
+      prototypes = Arrays.copyOf(prototypes, prototypes.length * 2);
+      newer = Arrays.copyOf(newer, newer.length * 2);
+      older = Arrays.copyOf(older, older.length * 2);
+    }
+
+    resources[slot] = resource;
+    amounts[slot] = amount;
+    slotsByResource.put(resource, slot);
+    linkFirst(slot);
+    if (slotsByAmount != null) {
+      slotsByAmount.add(slot);
+    }
+    for (SlotListener listener : slotListeners) {
+      listener.slotAdded(slot, resource);
+      listener.amountChanged(slot, resource, 0, amount);
+    }
+  }
+
+  private void setAmount(int slot, long amount) {
+    long oldAmount = amounts[slot];
+    // The sorted set must not see the amount change while it holds the slot
+    if (slotsByAmount != null) {
+      slotsByAmount.remove(slot);
+    }
+    amounts[slot] = amount;
+    if (slotsByAmount != null) {
+      slotsByAmount.add(slot);
+    }
+    for (SlotListener listener : slotListeners) {
+      listener.amountChanged(slot, resources[slot], oldAmount, amount);
+    }
+  }
+
+  private void remove(int slot) {
+    for (SlotListener listener : slotListeners) {
+      listener.amountChanged(slot, resources[slot], amounts[slot], 0);
+    }
+    slotsByResource.remove(resources[slot]);
+    unlink(slot);
+    if (slotsByAmount != null) {
+      slotsByAmount.remove(slot);
+    }
+
+    // Leave a tombstone so the slots of the other resources don't shift
+    resources[slot] = null;
+    amounts[slot] = 0;
+    prototypes[slot] = null;
+    slotAllocator.free(slot);
+    for (SlotListener listener : slotListeners) {
+      listener.slotRemoved(slot);
+    }
+  }
+
+  /**
+   * Moves resources from the end of the index into tombstones until the
+   * allocator considers the index compact again.
+   */
+  private void compact() {
+    while (!slotAllocator.isCompacted()) {
+      int from = slotAllocator.highestUsedSlot();
+      int to = slotAllocator.lowestFreeSlot();
+
+      if (slotsByAmount != null) {
+        slotsByAmount.remove(from);
+      }
+      relink(from, to);
+
+      resources[to] = resources[from];
+      amounts[to] = amounts[from];
+      prototypes[to] = prototypes[from];
+      slotsByResource.put(resources[to], to);
+      resources[from] = null;
+      amounts[from] = 0;
+      prototypes[from] = null;
+
+      if (slotsByAmount != null) {
+        slotsByAmount.add(to);
+      }
+      slotAllocator.move(from, to);
+      for (SlotListener listener : slotListeners) {
+        listener.slotMoved(from, to);
+      }
+    }
+  }
+
+  // Marks the slot as the most recently changed one
+  private void touch(int slot) {
+    if (mostRecentSlot != slot) {
+      unlink(slot);
+      linkFirst(slot);
+    }
+  }
+
+  private void linkFirst(int slot) {
+    newer[slot] = -1;
+    older[slot] = mostRecentSlot;
+    if (mostRecentSlot >= 0) {
+      newer[mostRecentSlot] = slot;
+    }
+    mostRecentSlot = slot;
+  }
+
+  private void unlink(int slot) {
+    int newerSlot = newer[slot];
+    int olderSlot = older[slot];
+    if (newerSlot >= 0) {
+      older[newerSlot] = olderSlot;
+    } else {
+      mostRecentSlot = olderSlot;
+    }
+    if (olderSlot >= 0) {
+      newer[olderSlot] = newerSlot;
+    }
+  }
+
+  // Puts slot "to" in the recency list where slot "from" was
+  private void relink(int from, int to) {
+    newer[to] = newer[from];
+    older[to] = older[from];
+    if (newer[to] >= 0) {
+      older[newer[to]] = to;
+    } else {
+      mostRecentSlot = to;
+    }
+    if (older[to] >= 0) {
+      newer[older[to]] = to;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import javax.annotation.Nonnull;
+
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * Extension of an item handler that can find the slot holding a specific item
+ * without reading every slot.
+ *
+ * Smart funnels, filtered arms and packagers usually look for "the slot that
+ * holds item X". Against a handler exposing a whole RS network that means a
+ * scan over every item type, so callers that know about this interface can
+ * check for it and ask directly instead:
+ *
+ * if (handler instanceof ResourceSlotLookup lookup) {
+ * int slot = lookup.findSlot(filterStack);
+ * }
+ */
+public interface ResourceSlotLookup {
+  /**
+   * @param resource The resource to look for
+   * @return The slot holding the resource, or -1 if the network doesn't have it
+   */
+  int getSlot(ItemResource resource);
+
+  /**
+   * @param stack The item (and components) to look for, the count is ignored
+   * @return The slot holding a matching item, or -1 if the network doesn't have
+   *         it
+   */
+  default int findSlot(ItemStack stack) {
+    if (stack.isEmpty()) {
+      return -1;
+    }
+    return getSlot(ItemResource.ofItemStack(stack));
+  }
+
+  /**
+   * Extracts a matching item without the caller having to find its slot first.
+   *
+   * @param template The item (and components) to extract, the count is ignored
+   * @param amount   How many to extract
+   * @param simulate If true, the extraction is only simulated
+   * @return The extracted stack, or ItemStack.EMPTY if nothing matched
+   */
+  @Nonnull
+  ItemStack extractItem(ItemStack template, int amount, boolean simulate);
+}
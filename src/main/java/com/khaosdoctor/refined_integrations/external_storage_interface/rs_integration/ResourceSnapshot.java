@@ -0,0 +1,110 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+/**
+ * Immutable copy of everything an interface shows, for bulk readers.
+ *
+ * Stock-keeping and computer mods read a whole inventory through getSlots()
+ * and one getStackInSlot() per slot, allocating a stack for every item type
+ * every time. A snapshot is one resource array and one amount array instead,
+ * with real amounts (not capped at 64), and a version: a caller that passes
+ * the version it already has to ResourceStorageAccess.getSnapshot() gets null
+ * back ("unchanged") instead of a new copy.
+ *
+ * The arrays are never handed out and every field is final and filled in the
+ * constructor, so a snapshot can't change after it was built and can be
+ * shared between callers (and threads).
+ *
+ * A snapshot also works as an inventory summary (what Create's packagers and
+ * stock links build by walking every slot): getAmount(resource) and
+ * getTotalAmount() answer without a scan. Since snapshots are only rebuilt
+ * when the network changes, a summary kept per snapshot version is only
+ * invalidated when the RS storage actually changed.
+ *
+ * Versions come from one counter shared by every interface, so a number is
+ * never used twice: not by two interfaces, and not by an interface that was
+ * broken and placed again. A version kept by a caller can't accidentally
+ * match a different snapshot.
+ */
+public final class ResourceSnapshot {
+  public static final ResourceSnapshot EMPTY = new ResourceSnapshot(0, new ItemResource[0], new long[0]);
+
+  // The last version handed out. EMPTY has 0, so real snapshots start at 1
+  private static final AtomicLong LAST_VERSION = new AtomicLong();
+
+  private final long version;
+  private final ItemResource[] resources;
+  private final long[] amounts;
+  private final long totalAmount;
+
+  // Resource -> position in the arrays
+  private final Map<ItemResource, Integer> positions;
+
+  /**
+   * @param resources The resources, owned by the snapshot from now on
+   * @param amounts   The amount of each resource, owned by the snapshot from
+   *                  now on
+   */
+  ResourceSnapshot(long version, ItemResource[] resources, long[] amounts) {
+    this.version = version;
+    this.resources = resources;
+    this.amounts = amounts;
+
+    long total = 0;
+    for (long amount : amounts) {
+      total += amount;
+    }
+    this.totalAmount = total;
+
+    this.positions = new HashMap<>(resources.length * 2);
+    for (int i = 0; i < resources.length; i++) {
+      positions.put(resources[i], i);
+    }
+  }
+
+  /**
+   * @return A version no snapshot has used before
+   */
+  static long nextVersion() {
+    return LAST_VERSION.incrementAndGet();
+  }
+
+  /**
+   * @return The version to pass to getSnapshot() next time
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public int size() {
+    return resources.length;
+  }
+
+  public ItemResource getResource(int index) {
+    return resources[index];
+  }
+
+  public long getAmount(int index) {
+    return amounts[index];
+  }
+
+  /**
+   * @return How much of the resource the snapshot holds, 0 if none
+   */
+  public long getAmount(ItemResource resource) {
+    Integer position = positions.get(resource);
+    return position == null ? 0 : amounts[position];
+  }
+
+  /**
+   * @return The amount of all resources together
+   */
+  public long getTotalAmount() {
+    return totalAmount;
+  }
+}
@@ -0,0 +1,103 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import javax.annotation.Nullable;
+
+import com.khaosdoctor.refined_integrations.RefinedIntegrations;
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+import net.minecraft.core.Direction;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import net.neoforged.neoforge.capabilities.BlockCapability;
+
+/**
+ * Resource-keyed access to the network behind an interface, without slots.
+ *
+ * The IItemHandler slot model makes a caller that wants "16 iron ingots" scan
+ * the slots first. Integrations that know what they want (Create packagers,
+ * scripting mods) can ask for this capability instead, and every call goes
+ * straight to the network's storage without touching the slot index:
+ *
+ * ResourceStorageAccess access = level.getCapability(ResourceStorageAccess.BLOCK, pos, side);
+ * if (access != null) {
+ * long extracted = access.extract(ironIngot, 16, false);
+ * }
+ *
+ * The settings of the side still apply: its filter, transfer mode and budget
+ * work as they do for the item handler.
+ *
+ * Amounts are longs, RS stores more than fits in a stack (or an int).
+ *
+ * Bulk readers can get everything at once with getSnapshot(), which answers
+ * "unchanged" without copying anything when the caller is up to date.
+ */
+public interface ResourceStorageAccess {
+  /**
+   * The capability, registered next to Capabilities.ItemHandler.BLOCK.
+   */
+  BlockCapability<ResourceStorageAccess, Direction> BLOCK = BlockCapability.createSided(
+      ResourceLocation.fromNamespaceAndPath(RefinedIntegrations.MODID, "resource_storage_access"),
+      ResourceStorageAccess.class);
+
+  /**
+   * @param simulate If true, the insertion is only simulated
+   * @return How much of the amount was (or would be) inserted
+   */
+  long insert(ItemResource resource, long amount, boolean simulate);
+
+  /**
+   * @param simulate If true, the extraction is only simulated
+   * @return How much of the amount was (or would be) extracted
+   */
+  long extract(ItemResource resource, long amount, boolean simulate);
+
+  /**
+   * @return How much of the resource the network has, as seen through this
+   *         side (0 if the side's filter or mode hides it)
+   */
+  long count(ItemResource resource);
+
+  /**
+   * @return The amount of all items this side shows together, kept as a
+   *         running total so this is O(1)
+   */
+  long getTotalAmount();
+
+  /**
+   * @return The number of item types this side shows, O(1) like
+   *         getTotalAmount()
+   */
+  int getTypeCount();
+
+  /**
+   * Reads everything this side shows in one call (see ResourceSnapshot).
+   *
+   * @param knownVersion The version of the snapshot the caller already has, or
+   *                     -1 if it has none
+   * @return A snapshot of the current contents, or null if the caller's
+   *         snapshot is still current
+   */
+  @Nullable
+  ResourceSnapshot getSnapshot(long knownVersion);
+
+  /**
+   * @param template The item (and components) to insert, the count is ignored
+   */
+  default long insert(ItemStack template, long amount, boolean simulate) {
+    return template.isEmpty() ? 0 : insert(ItemResource.ofItemStack(template), amount, simulate);
+  }
+
+  /**
+   * @param template The item (and components) to extract, the count is ignored
+   */
+  default long extract(ItemStack template, long amount, boolean simulate) {
+    return template.isEmpty() ? 0 : extract(ItemResource.ofItemStack(template), amount, simulate);
+  }
+
+  /**
+   * @param template The item (and components) to count, the count is ignored
+   */
+  default long count(ItemStack template) {
+    return template.isEmpty() ? 0 : count(ItemResource.ofItemStack(template));
+  }
+}
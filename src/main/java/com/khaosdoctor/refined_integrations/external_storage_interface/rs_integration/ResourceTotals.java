@@ -0,0 +1,115 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import javax.annotation.Nullable;
+
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+/**
+ * Running totals over a NetworkResourceIndex: how many items and how many item
+ * types the network holds, optionally only counting items that pass a filter.
+ *
+ * Comparators and Create's threshold switch work out how full an inventory is
+ * by summing every slot, which against a network with 50k item types is a
+ * full scan on every update. The totals are instead updated from the index's
+ * amount deltas (see SlotListener.amountChanged), so reading them is O(1).
+ *
+ * Like FilteredSlotView, the totals bind to whatever index the interface's
+ * network currently uses; binding seeds them with one pass over the index.
+ */
+public class ResourceTotals implements NetworkResourceIndex.SlotListener {
+  @Nullable
+  private final ItemFilter filter;
+
+  @Nullable
+  private NetworkResourceIndex index;
+
+  private long totalAmount = 0;
+  private int typeCount = 0;
+
+  /**
+   * @param filter Only items passing this filter are counted, null for all
+   */
+  public ResourceTotals(@Nullable ItemFilter filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Follows the given index, seeding the totals from it if it isn't the index
+   * we already follow.
+   */
+  public void bind(NetworkResourceIndex newIndex) {
+    if (index == newIndex) {
+      return;
+    }
+    unbind();
+
+    index = newIndex;
+    for (int slot = 0; slot < newIndex.size(); slot++) {
+      ItemResource resource = newIndex.getResource(slot);
+      if (resource != null) {
+        amountChanged(slot, resource, 0, newIndex.getAmount(slot));
+      }
+    }
+    newIndex.addSlotListener(this);
+  }
+
+  /**
+   * Stops following the current index (if any) and resets the totals.
+   */
+  public void unbind() {
+    if (index != null) {
+      index.removeSlotListener(this);
+      index = null;
+    }
+    cleared();
+  }
+
+  /**
+   * @return The amount of all counted items together
+   */
+  public long getTotalAmount() {
+    return totalAmount;
+  }
+
+  /**
+   * @return The number of counted item types
+   */
+  public int getTypeCount() {
+    return typeCount;
+  }
+
+  @Override
+  public void amountChanged(int slot, ItemResource resource, long oldAmount, long newAmount) {
+    if (filter != null && !filter.test(resource)) {
+      return;
+    }
+
+    totalAmount += newAmount - oldAmount;
+    if (oldAmount == 0 && newAmount > 0) {
+      typeCount++;
+    } else if (oldAmount > 0 && newAmount == 0) {
+      typeCount--;
+    }
+  }
+
+  @Override
+  public void slotAdded(int slot, ItemResource resource) {
+    // Counted through amountChanged
+  }
+
+  @Override
+  public void slotRemoved(int slot) {
+    // Counted through amountChanged
+  }
+
+  @Override
+  public void slotMoved(int from, int to) {
+    // Totals don't depend on slots
+  }
+
+  @Override
+  public void cleared() {
+    totalAmount = 0;
+    typeCount = 0;
+  }
+}
@@ -0,0 +1,76 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nullable;
+
+import com.refinedmods.refinedstorage.api.network.Network;
+import com.refinedmods.refinedstorage.api.network.storage.StorageNetworkComponent;
+
+/**
+ * Keeps one NetworkResourceIndex per RS network, shared by every External
+ * Storage Interface attached to that network.
+ *
+ * With 30 interfaces on one network feeding different Create lines, each of
+ * them would otherwise listen to the same root storage and maintain its own
+ * copy of the same index. Instead, the first interface to join a network
+ * creates the index, later ones reuse it, and the last one to leave detaches
+ * it (reference counting).
+ *
+ * Network merges and splits need no special handling: RS moves each node to
+ * its new network through setNetwork(), which releases the old network's
+ * index and acquires the new one's.
+ *
+ * The map is weak so a network that RS dropped without telling every node
+ * doesn't keep its index alive. Everything here runs on the server thread.
+ */
+public final class SharedNetworkIndexes {
+  private static final class Shared {
+    private final NetworkResourceIndex index = new NetworkResourceIndex();
+    private int references = 0;
+  }
+
+  private static final Map<Network, Shared> INDEXES = new WeakHashMap<>();
+
+  private SharedNetworkIndexes() {
+  }
+
+  /**
+   * Gets the index of the network, creating and attaching it if this is the
+   * first interface on the network, and adds a reference to it.
+   *
+   * @return The shared index, or null if the network has no storage component
+   */
+  @Nullable
+  public static NetworkResourceIndex acquire(Network network) {
+    StorageNetworkComponent storage = network.getComponent(StorageNetworkComponent.class);
+    if (storage == null) {
+      return null;
+    }
+
+    Shared shared = INDEXES.computeIfAbsent(network, n -> new Shared());
+    if (shared.references == 0) {
+      shared.index.attach(storage);
+    }
+    shared.references++;
+    return shared.index;
+  }
+
+  /**
+   * Removes a reference to the index of the network. The last reference
+   * detaches the index from the network's storage and forgets it.
+   */
+  public static void release(Network network) {
+    Shared shared = INDEXES.get(network);
+    if (shared == null) {
+      return;
+    }
+
+    shared.references--;
+    if (shared.references <= 0) {
+      shared.index.detach();
+      INDEXES.remove(network);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.refinedmods.refinedstorage.api.network.Network;
+
+/**
+ * Keeps one NetworkIoScheduler per RS network, shared by every External
+ * Storage Interface attached to that network.
+ *
+ * Works like SharedNetworkIndexes: the first interface to join a network
+ * creates its scheduler and the last one to leave forgets it. Merges and
+ * splits move each node through setNetwork(), which leaves the old network's
+ * scheduler and joins the new one's.
+ *
+ * The map is weak so a network that RS dropped without telling every node
+ * doesn't keep its scheduler alive. Everything here runs on the server thread.
+ */
+public final class SharedNetworkSchedulers {
+  private static final Map<Network, NetworkIoScheduler> SCHEDULERS = new WeakHashMap<>();
+
+  private SharedNetworkSchedulers() {
+  }
+
+  /**
+   * Adds the share to the scheduler of the network, creating the scheduler if
+   * this is the first interface on the network.
+   */
+  public static void join(Network network, NetworkIoScheduler.IoShare share) {
+    SCHEDULERS.computeIfAbsent(network, n -> new NetworkIoScheduler()).add(share);
+  }
+
+  /**
+   * Removes the share from the scheduler of the network. The last share to
+   * leave forgets the scheduler.
+   */
+  public static void leave(Network network, NetworkIoScheduler.IoShare share) {
+    NetworkIoScheduler scheduler = SCHEDULERS.get(network);
+    if (scheduler == null) {
+      return;
+    }
+
+    scheduler.remove(share);
+    if (scheduler.isEmpty()) {
+      SCHEDULERS.remove(network);
+    }
+  }
+}
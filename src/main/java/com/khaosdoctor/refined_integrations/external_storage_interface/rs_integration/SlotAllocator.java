@@ -0,0 +1,109 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.BitSet;
+
+/**
+ * Hands out slot numbers for the NetworkResourceIndex.
+ *
+ * Create machines remember slot indices between ticks, so a resource has to
+ * keep its slot for as long as it exists in the network. When a resource runs
+ * out its slot becomes a "tombstone" (an empty slot) instead of shifting every
+ * later slot down by one.
+ *
+ * Tombstone policy:
+ * - New resources reuse the lowest tombstone first, so holes get filled back in
+ * - Tombstones at the end of the slot range are trimmed right away, which never
+ * moves a live resource
+ * - If tombstones still make up more than half of the slots, the index compacts
+ * by moving resources from the end into the holes. That is the only time a
+ * live resource changes slot, and it stops once tombstones are back under a
+ * quarter of the slots, so the number of moved resources is bounded
+ */
+public class SlotAllocator {
+  // Don't bother compacting small indices, a few empty slots are cheap to scan
+  private static final int MIN_TOMBSTONES_TO_COMPACT = 64;
+
+  // Tombstones (free slots) below the high water mark
+  private final BitSet freeSlots = new BitSet();
+  private int tombstones = 0;
+
+  // Number of slots handed out so far, this is what getSlots() reports
+  private int highWaterMark = 0;
+
+  /**
+   * @return The slot for a new resource, reusing the lowest tombstone if any
+   */
+  public int allocate() {
+    if (tombstones > 0) {
+      int slot = freeSlots.nextSetBit(0);
+      freeSlots.clear(slot);
+      tombstones--;
+      return slot;
+    }
+    return highWaterMark++;
+  }
+
+  /**
+   * Marks a slot as a tombstone, trimming trailing tombstones.
+   *
+   * @param slot The slot of the resource that left the network
+   */
+  public void free(int slot) {
+    freeSlots.set(slot);
+    tombstones++;
+
+    while (highWaterMark > 0 && freeSlots.get(highWaterMark - 1)) {
+      freeSlots.clear(highWaterMark - 1);
+      tombstones--;
+      highWaterMark--;
+    }
+  }
+
+  /**
+   * @return Whether there are so many tombstones that it's worth moving
+   *         resources around to get rid of them
+   */
+  public boolean shouldCompact() {
+    return tombstones >= MIN_TOMBSTONES_TO_COMPACT && tombstones * 2 > highWaterMark;
+  }
+
+  /**
+   * @return Whether compaction has removed enough tombstones to stop
+   */
+  public boolean isCompacted() {
+    return tombstones < MIN_TOMBSTONES_TO_COMPACT || tombstones * 4 <= highWaterMark;
+  }
+
+  /**
+   * @return The lowest tombstone, or -1 if there is none
+   */
+  public int lowestFreeSlot() {
+    return tombstones == 0 ? -1 : freeSlots.nextSetBit(0);
+  }
+
+  /**
+   * @return The highest slot in use (trailing tombstones are always trimmed)
+   */
+  public int highestUsedSlot() {
+    return highWaterMark - 1;
+  }
+
+  /**
+   * Records that the resource in slot "from" was moved to the tombstone "to".
+   */
+  public void move(int from, int to) {
+    freeSlots.clear(to);
+    tombstones--;
+    free(from);
+  }
+
+  public int size() {
+    return highWaterMark;
+  }
+
+  public void clear() {
+    freeSlots.clear();
+    tombstones = 0;
+    highWaterMark = 0;
+  }
+}
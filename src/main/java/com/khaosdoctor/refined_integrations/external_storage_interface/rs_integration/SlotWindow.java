@@ -0,0 +1,514 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+import javax.annotation.Nullable;
+
+import com.refinedmods.refinedstorage.common.support.resource.ItemResource;
+
+import net.minecraft.nbt.CompoundTag;
+
+/**
+ * Decides which part of the network an interface exposes as slots.
+ *
+ * On a network with 100k item types, exposing everything means getSlots()
+ * returns 100k+1 and any Create scanner iterating the handler stalls the tick.
+ * A window limits an interface to a bounded subset of the network:
+ * - ALL: every item type (the default)
+ * - PAGE: "size" slots starting at slot page * size of the index
+ * - MOST_ABUNDANT: the "size" item types with the largest amounts
+ * - RECENTLY_CHANGED: the "size" item types that changed most recently
+ *
+ * The ordered modes (MOST_ABUNDANT and RECENTLY_CHANGED) are seeded once from
+ * the orderings the NetworkResourceIndex maintains, and then follow the index
+ * through its SlotListener. Each item type in the window keeps its window slot
+ * for as long as it stays in the window, just like index slots (Create
+ * machines remember slot numbers between ticks). A change only touches the
+ * window when an item type enters it: it takes the slot of the item type it
+ * pushed out (the least abundant, or least recently changed, one). So the
+ * window slots are not sorted; slot 0 is not necessarily the most abundant.
+ * If there are fewer matching item types than the window size, slots of item
+ * types that left stay empty until a new one takes them.
+ *
+ * When the interface has a filter, the window is applied to the filtered view:
+ * PAGE pages through the filtered slots, and the ordered modes only take item
+ * types that pass the filter.
+ *
+ * The window is part of the block's configuration and is saved with it.
+ */
+public class SlotWindow implements NetworkResourceIndex.SlotListener {
+  public static final int MAX_SIZE = 4096;
+
+  private static final String TAG_MODE = "Mode";
+  private static final String TAG_SIZE = "Size";
+  private static final String TAG_PAGE = "Page";
+
+  public enum Mode {
+    ALL,
+    PAGE,
+    MOST_ABUNDANT,
+    RECENTLY_CHANGED
+  }
+
+  private final Mode mode;
+  private final int size;
+  private final int page;
+
+  // The index and filtered view the ordered modes follow, null while unbound
+  @Nullable
+  private NetworkResourceIndex boundIndex;
+  @Nullable
+  private FilteredSlotView boundView;
+  @Nullable
+  private ItemFilter filter;
+
+  // Hands out window slots to the item types in the window ("members")
+  private final SlotAllocator windowSlotAllocator = new SlotAllocator();
+  private int memberCount = 0;
+  // Window slot -> index slot, and index slot -> window slot; -1 means none
+  private int[] indexSlots = new int[0];
+  private int[] windowSlots = new int[0];
+
+  // RECENTLY_CHANGED: the members linked by window slot, most recent first
+  private int[] newer = new int[0];
+  private int[] older = new int[0];
+  private int mostRecent = -1;
+  private int leastRecent = -1;
+
+  // MOST_ABUNDANT: the window slots sorted like the index sorts its slots
+  // (largest amount first), by the amounts we last saw for them
+  @Nullable
+  private TreeSet<Integer> byAmount;
+  private long[] memberAmounts = new long[0];
+
+  public SlotWindow(Mode mode, int size, int page) {
+    this.mode = mode;
+    this.size = Math.max(1, Math.min(size, MAX_SIZE));
+    // Keep page * size + size within an int, so no slot number overflows
+    this.page = Math.max(0, Math.min(page, Integer.MAX_VALUE / this.size - 1));
+  }
+
+  public static SlotWindow all() {
+    return new SlotWindow(Mode.ALL, MAX_SIZE, 0);
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * @param view The filtered view of the interface, or null if unfiltered
+   * @return How many slots the window exposes
+   */
+  public int size(NetworkResourceIndex index, @Nullable FilteredSlotView view) {
+    int available = view == null ? index.size() : view.size();
+    return switch (mode) {
+      case ALL -> available;
+      case PAGE -> Math.max(0, Math.min(size, available - pageOffset()));
+      case MOST_ABUNDANT, RECENTLY_CHANGED -> {
+        bind(index, view);
+        yield windowSlotAllocator.size();
+      }
+    };
+  }
+
+  /**
+   * @param view The filtered view of the interface, or null if unfiltered
+   * @return The index slot shown in the given window slot, or -1 if the
+   *         window slot is out of range
+   */
+  public int toIndexSlot(NetworkResourceIndex index, @Nullable FilteredSlotView view, int windowSlot) {
+    if (windowSlot < 0) {
+      return -1;
+    }
+
+    return switch (mode) {
+      case ALL -> view == null ? windowSlot : view.toIndexSlot(windowSlot);
+      case PAGE -> {
+        if (windowSlot >= size) {
+          yield -1;
+        }
+        int slot = pageOffset() + windowSlot;
+        yield view == null ? slot : view.toIndexSlot(slot);
+      }
+      case MOST_ABUNDANT, RECENTLY_CHANGED -> {
+        bind(index, view);
+        yield windowSlot < windowSlotAllocator.size() ? indexSlots[windowSlot] : -1;
+      }
+    };
+  }
+
+  /**
+   * @param view The filtered view of the interface, or null if unfiltered
+   * @return The window slot showing the given index slot, or -1 if the index
+   *         slot is not part of the window
+   */
+  public int toWindowSlot(NetworkResourceIndex index, @Nullable FilteredSlotView view, int indexSlot) {
+    if (indexSlot < 0) {
+      return -1;
+    }
+
+    return switch (mode) {
+      case ALL -> view == null ? indexSlot : view.toViewSlot(indexSlot);
+      case PAGE -> {
+        int slot = view == null ? indexSlot : view.toViewSlot(indexSlot);
+        int windowSlot = slot - pageOffset();
+        yield slot >= 0 && windowSlot >= 0 && windowSlot < size ? windowSlot : -1;
+      }
+      case MOST_ABUNDANT, RECENTLY_CHANGED -> {
+        bind(index, view);
+        yield getWindowSlot(indexSlot);
+      }
+    };
+  }
+
+  private int pageOffset() {
+    return page * size;
+  }
+
+  /**
+   * Makes an ordered window follow the given index (and filtered view),
+   * seeding it from the index if it isn't what we already follow.
+   */
+  private void bind(NetworkResourceIndex index, @Nullable FilteredSlotView view) {
+    if (boundIndex == index && boundView == view) {
+      return;
+    }
+    unbind();
+
+    boundIndex = index;
+    boundView = view;
+    filter = view == null ? null : view.getFilter();
+    indexSlots = newMapping(size);
+    if (mode == Mode.MOST_ABUNDANT) {
+      byAmount = new TreeSet<>(this::compareMembers);
+      memberAmounts = new long[size];
+    } else {
+      newer = new int[size];
+      older = new int[size];
+    }
+
+    // Only slots that pass the interface's filter can be part of the window,
+    // and there are never more of them than the view holds
+    IntPredicate passes = view == null ? null : view::containsIndexSlot;
+    int limit = view == null ? size : Math.min(size, view.getTypeCount());
+    int[] seed = mode == Mode.MOST_ABUNDANT
+        ? index.getMostAbundant(limit, passes)
+        : index.getMostRecentlyChanged(limit, passes);
+    for (int slot : seed) {
+      int windowSlot = addMember(slot);
+      if (mode == Mode.MOST_ABUNDANT) {
+        memberAmounts[windowSlot] = index.getAmount(slot);
+        byAmount.add(windowSlot);
+      } else {
+        linkLast(windowSlot);
+      }
+    }
+    index.addSlotListener(this);
+  }
+
+  /**
+   * Stops following the current index (if any). Called when the window is no
+   * longer used, so the shared index doesn't keep notifying it.
+   */
+  public void unbind() {
+    if (boundIndex != null) {
+      boundIndex.removeSlotListener(this);
+      boundIndex = null;
+    }
+    boundView = null;
+    filter = null;
+    cleared();
+  }
+
+  @Override
+  public void slotAdded(int slot, ItemResource resource) {
+    // Handled through amountChanged, which follows right away
+  }
+
+  @Override
+  public void amountChanged(int slot, ItemResource resource, long oldAmount, long newAmount) {
+    if (newAmount == 0) {
+      return; // The resource is leaving, handled in slotRemoved
+    }
+
+    int windowSlot = getWindowSlot(slot);
+    if (windowSlot >= 0) {
+      if (mode == Mode.MOST_ABUNDANT) {
+        memberAmountChanged(windowSlot, newAmount);
+      } else {
+        unlink(windowSlot);
+        linkFirst(windowSlot);
+      }
+      return;
+    }
+
+    if (filter != null && !filter.test(resource)) {
+      return;
+    }
+    if (mode == Mode.MOST_ABUNDANT) {
+      offerByAmount(slot, newAmount);
+    } else {
+      // The resource is now the most recently changed one, so it's always in.
+      // If the window is full, it takes the slot of the least recent member
+      if (memberCount < size) {
+        windowSlot = addMember(slot);
+      } else {
+        windowSlot = leastRecent;
+        unlink(windowSlot);
+        replaceMember(windowSlot, slot);
+      }
+      linkFirst(windowSlot);
+    }
+  }
+
+  @Override
+  public void slotRemoved(int slot) {
+    int windowSlot = getWindowSlot(slot);
+    if (windowSlot < 0) {
+      return;
+    }
+
+    boolean wasFull = memberCount == size;
+    if (mode == Mode.MOST_ABUNDANT) {
+      byAmount.remove(windowSlot);
+    } else {
+      unlink(windowSlot);
+    }
+
+    // A full window may have left out resources, the best of them takes the
+    // freed slot. Every left out resource ranks after every member, so the
+    // search starts at our weakest member
+    int candidate = -1;
+    if (wasFull) {
+      candidate = mode == Mode.MOST_ABUNDANT
+          ? nextNonMember(byAmount.isEmpty() ? -1 : indexSlots[byAmount.last()], true)
+          : nextNonMember(leastRecent < 0 ? -1 : indexSlots[leastRecent], false);
+    }
+    if (candidate < 0) {
+      removeMember(windowSlot);
+      return;
+    }
+
+    replaceMember(windowSlot, candidate);
+    if (mode == Mode.MOST_ABUNDANT) {
+      memberAmounts[windowSlot] = boundIndex.getAmount(candidate);
+      byAmount.add(windowSlot);
+    } else {
+      linkLast(windowSlot);
+    }
+  }
+
+  @Override
+  public void slotMoved(int from, int to) {
+    int windowSlot = getWindowSlot(from);
+    if (windowSlot < 0) {
+      return;
+    }
+
+    // Ties in the amount order are broken by index slot, so re-sort the member
+    if (byAmount != null) {
+      byAmount.remove(windowSlot);
+    }
+    replaceMember(windowSlot, to);
+    if (byAmount != null) {
+      byAmount.add(windowSlot);
+    }
+  }
+
+  @Override
+  public void cleared() {
+    Arrays.fill(indexSlots, -1);
+    Arrays.fill(windowSlots, -1);
+    windowSlotAllocator.clear();
+    memberCount = 0;
+    mostRecent = -1;
+    leastRecent = -1;
+    if (byAmount != null) {
+      byAmount.clear();
+    }
+  }
+
+  // MOST_ABUNDANT: a member's amount changed. If it dropped to the bottom of
+  // the window, the best left out resource may now rank before it
+  private void memberAmountChanged(int windowSlot, long newAmount) {
+    long oldAmount = memberAmounts[windowSlot];
+    byAmount.remove(windowSlot);
+    memberAmounts[windowSlot] = newAmount;
+    byAmount.add(windowSlot);
+    if (newAmount >= oldAmount || memberCount < size || byAmount.last() != windowSlot) {
+      return;
+    }
+
+    // Left out resources rank after every other member, so start after the
+    // weakest of those
+    Integer other = byAmount.lower(windowSlot);
+    int candidate = nextNonMember(other == null ? -1 : indexSlots[other], true);
+    if (candidate < 0) {
+      return;
+    }
+    long candidateAmount = boundIndex.getAmount(candidate);
+    if (ranksBefore(candidateAmount, candidate, newAmount, indexSlots[windowSlot])) {
+      byAmount.remove(windowSlot);
+      replaceMember(windowSlot, candidate);
+      memberAmounts[windowSlot] = candidateAmount;
+      byAmount.add(windowSlot);
+    }
+  }
+
+  // MOST_ABUNDANT: a resource outside the window changed, it gets in if there
+  // is room or it now ranks before our weakest member (whose slot it takes)
+  private void offerByAmount(int slot, long amount) {
+    if (memberCount < size) {
+      int windowSlot = addMember(slot);
+      memberAmounts[windowSlot] = amount;
+      byAmount.add(windowSlot);
+      return;
+    }
+
+    int weakest = byAmount.last();
+    if (ranksBefore(amount, slot, memberAmounts[weakest], indexSlots[weakest])) {
+      byAmount.remove(weakest);
+      replaceMember(weakest, slot);
+      memberAmounts[weakest] = amount;
+      byAmount.add(weakest);
+    }
+  }
+
+  /**
+   * Walks the index order after the given slot and returns the first resource
+   * that passes the filter and isn't in the window yet.
+   *
+   * @param after     The index slot to start after, -1 for the start
+   * @param abundance Walk the abundance order, otherwise the recency order
+   * @return The index slot, or -1 if there is none
+   */
+  private int nextNonMember(int after, boolean abundance) {
+    NetworkResourceIndex index = boundIndex;
+    int slot = after;
+    while (true) {
+      slot = abundance ? index.getNextByAmount(slot) : index.getOlderSlot(slot);
+      if (slot < 0) {
+        return -1;
+      }
+      if (getWindowSlot(slot) < 0 && (filter == null || filter.test(index.getResource(slot)))) {
+        return slot;
+      }
+    }
+  }
+
+  // Largest amount first, ties broken by index slot: the index's own order
+  private static boolean ranksBefore(long amountA, int slotA, long amountB, int slotB) {
+    return amountA != amountB ? amountA > amountB : slotA < slotB;
+  }
+
+  private int compareMembers(int a, int b) {
+    int byAmountOrder = Long.compare(memberAmounts[b], memberAmounts[a]);
+    return byAmountOrder != 0 ? byAmountOrder : Integer.compare(indexSlots[a], indexSlots[b]);
+  }
+
+  private int getWindowSlot(int indexSlot) {
+    return indexSlot >= 0 && indexSlot < windowSlots.length ? windowSlots[indexSlot] : -1;
+  }
+
+  private int addMember(int indexSlot) {
+    int windowSlot = windowSlotAllocator.allocate();
+    indexSlots[windowSlot] = indexSlot;
+    windowSlots = ensureCapacity(windowSlots, indexSlot);
+    windowSlots[indexSlot] = windowSlot;
+    memberCount++;
+    return windowSlot;
+  }
+
+  // Puts another resource in the window slot, the old one leaves the window
+  private void replaceMember(int windowSlot, int indexSlot) {
+    windowSlots[indexSlots[windowSlot]] = -1;
+    indexSlots[windowSlot] = indexSlot;
+    windowSlots = ensureCapacity(windowSlots, indexSlot);
+    windowSlots[indexSlot] = windowSlot;
+  }
+
+  private void removeMember(int windowSlot) {
+    windowSlots[indexSlots[windowSlot]] = -1;
+    indexSlots[windowSlot] = -1;
+    windowSlotAllocator.free(windowSlot);
+    memberCount--;
+  }
+
+  private void linkFirst(int windowSlot) {
+    newer[windowSlot] = -1;
+    older[windowSlot] = mostRecent;
+    if (mostRecent >= 0) {
+      newer[mostRecent] = windowSlot;
+    } else {
+      leastRecent = windowSlot;
+    }
+    mostRecent = windowSlot;
+  }
+
+  private void linkLast(int windowSlot) {
+    older[windowSlot] = -1;
+    newer[windowSlot] = leastRecent;
+    if (leastRecent >= 0) {
+      older[leastRecent] = windowSlot;
+    } else {
+      mostRecent = windowSlot;
+    }
+    leastRecent = windowSlot;
+  }
+
+  private void unlink(int windowSlot) {
+    int newerSlot = newer[windowSlot];
+    int olderSlot = older[windowSlot];
+    if (newerSlot >= 0) {
+      older[newerSlot] = olderSlot;
+    } else {
+      mostRecent = olderSlot;
+    }
+    if (olderSlot >= 0) {
+      newer[olderSlot] = newerSlot;
+    } else {
+      leastRecent = newerSlot;
+    }
+  }
+
+  private static int[] newMapping(int capacity) {
+    int[] mapping = new int[capacity];
+    Arrays.fill(mapping, -1);
+    return mapping;
+  }
+
+  private static int[] ensureCapacity(int[] mapping, int slot) {
+    if (slot < mapping.length) {
+      return mapping;
+    }
+
+    int[] grown = newMapping(Math.max(mapping.length * 2, slot + 1));
+    System.arraycopy(mapping, 0, grown, 0, mapping.length);
+    return grown;
+  }
+
+  public CompoundTag save() {
+    CompoundTag tag = new CompoundTag();
+    tag.putString(TAG_MODE, mode.name());
+    tag.putInt(TAG_SIZE, size);
+    tag.putInt(TAG_PAGE, page);
+    return tag;
+  }
+
+  /**
+   * Reads a window written by save(). Missing or unknown values fall back to
+   * exposing everything.
+   */
+  public static SlotWindow load(CompoundTag tag) {
+    Mode mode;
+    try {
+      mode = Mode.valueOf(tag.getString(TAG_MODE));
+    } catch (IllegalArgumentException e) {
+      return all();
+    }
+    return new SlotWindow(mode, tag.getInt(TAG_SIZE), tag.getInt(TAG_PAGE));
+  }
+}
@@ -0,0 +1,40 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+/**
+ * Which directions an interface moves items in.
+ *
+ * Most interfaces only ever go one way (a Create belt feeding the network, or
+ * a funnel pulling from it), and knowing that lets the handler skip work:
+ * - BIDIRECTIONAL: exposes the network's items and accepts inserts (the
+ * default)
+ * - INSERT_ONLY: a pure sink. The handler reports a single empty slot and the
+ * node doesn't even take a reference to the network's resource index, so the
+ * interface never causes storage.getAll() or the index's bookkeeping
+ * - EXTRACT_ONLY: exposes the network's items but rejects every insert before
+ * touching the network
+ */
+public enum TransferMode {
+  BIDIRECTIONAL,
+  INSERT_ONLY,
+  EXTRACT_ONLY;
+
+  public boolean canInsert() {
+    return this != EXTRACT_ONLY;
+  }
+
+  public boolean canExtract() {
+    return this != INSERT_ONLY;
+  }
+
+  /**
+   * Parses a mode saved by name, falling back to BIDIRECTIONAL for missing or
+   * unknown values.
+   */
+  public static TransferMode byName(String name) {
+    try {
+      return valueOf(name);
+    } catch (IllegalArgumentException e) {
+      return BIDIRECTIONAL;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.khaosdoctor.refined_integrations.external_storage_interface.rs_integration;
+
+import net.minecraft.nbt.CompoundTag;
+
+/**
+ * Token bucket limiting how many items an interface moves per tick.
+ *
+ * One runaway Create contraption can otherwise drain or flood the network as
+ * fast as it can call the handler, and every call is work for the RS tick.
+ * With a limit:
+ * - The bucket gains "itemsPerTick" tokens every tick, up to "burst" tokens,
+ * so short bursts are fine but the average rate is capped. The tokens of the
+ * ticks since the last use are added when the bucket is used (see refill),
+ * so an idle interface doesn't have to refill it every tick
+ * - Every item inserted or extracted costs one token
+ * - When the bucket is empty, calls are rejected before touching the network
+ *
+ * Inserts and extracts share the same bucket. An itemsPerTick of 0 (the
+ * default) means no limit.
+ *
+ * The configuration and the current token count are saved with the block, so
+ * unloading a chunk doesn't hand out a free full bucket.
+ */
+public class TransferRateLimiter {
+  private static final String TAG_ITEMS_PER_TICK = "ItemsPerTick";
+  private static final String TAG_BURST = "Burst";
+  private static final String TAG_TOKENS = "Tokens";
+
+  private int itemsPerTick;
+  private int burst;
+  private long tokens;
+  // Game time of the last refill, -1 until the bucket is first used. Not
+  // saved: after loading, the bucket continues from its saved tokens
+  private long lastRefill = -1;
+
+  public TransferRateLimiter() {
+    configure(0, 0);
+  }
+
+  /**
+   * @param itemsPerTick How many items the bucket gains per tick, 0 disables
+   *                     the limit
+   * @param burst        How many items the bucket can hold, raised to at least
+   *                     itemsPerTick
+   */
+  public void configure(int itemsPerTick, int burst) {
+    this.itemsPerTick = Math.max(0, itemsPerTick);
+    this.burst = Math.max(this.itemsPerTick, burst);
+    this.tokens = Math.min(tokens, this.burst);
+  }
+
+  public boolean isEnabled() {
+    return itemsPerTick > 0;
+  }
+
+  public int getItemsPerTick() {
+    return itemsPerTick;
+  }
+
+  public int getBurst() {
+    return burst;
+  }
+
+  /**
+   * Adds the tokens of every tick since the last refill. Called before the
+   * bucket is used.
+   *
+   * @param gameTime The current game time
+   */
+  public void refill(long gameTime) {
+    if (isEnabled() && lastRefill >= 0 && gameTime > lastRefill && tokens < burst) {
+      // More than "burst" ticks always fill the bucket, capping the elapsed
+      // time first keeps the multiplication from overflowing
+      long elapsed = Math.min(gameTime - lastRefill, burst);
+      tokens = Math.min(burst, tokens + elapsed * itemsPerTick);
+    }
+    lastRefill = gameTime;
+  }
+
+  /**
+   * @return How many of the requested items fit in the current budget
+   */
+  public int available(int requested) {
+    return isEnabled() ? (int) Math.min(requested, tokens) : requested;
+  }
+
+  /**
+   * Takes the tokens for items that were actually moved.
+   */
+  public void consume(long moved) {
+    if (isEnabled() && moved > 0) {
+      tokens = Math.max(0, tokens - moved);
+    }
+  }
+
+  public CompoundTag save() {
+    CompoundTag tag = new CompoundTag();
+    tag.putInt(TAG_ITEMS_PER_TICK, itemsPerTick);
+    tag.putInt(TAG_BURST, burst);
+    tag.putLong(TAG_TOKENS, tokens);
+    return tag;
+  }
+
+  /**
+   * Restores a configuration written by save(). A missing tag disables the
+   * limit.
+   */
+  public void load(CompoundTag tag) {
+    tokens = tag.getLong(TAG_TOKENS);
+    configure(tag.getInt(TAG_ITEMS_PER_TICK), tag.getInt(TAG_BURST));
+  }
+}